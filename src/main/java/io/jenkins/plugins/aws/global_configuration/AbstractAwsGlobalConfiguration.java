@@ -24,18 +24,99 @@
 
 package io.jenkins.plugins.aws.global_configuration;
 
+import edu.umd.cs.findbugs.annotations.CheckForNull;
+import edu.umd.cs.findbugs.annotations.NonNull;
+import hudson.BulkChange;
+import hudson.XmlFile;
+import hudson.model.listeners.SaveableListener;
+import hudson.util.XStream2;
+import java.io.IOException;
+import java.io.StringReader;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 import jenkins.model.GlobalConfiguration;
 import jenkins.model.GlobalConfigurationCategory;
+import net.sf.json.JSONObject;
 import org.apache.commons.lang.StringUtils;
+import org.kohsuke.stapler.StaplerRequest2;
 
+/**
+ * Base class of the AWS configurations, each one is stored in its own file. Saving only writes the file when the
+ * configuration changed, and a form submission writes it once.
+ */
 public abstract class AbstractAwsGlobalConfiguration extends GlobalConfiguration {
 
     private static final Logger LOGGER = Logger.getLogger(AbstractAwsGlobalConfiguration.class.getName());
 
+    /**
+     * Serialized form of the configuration as last loaded or saved, null if it was not persisted yet.
+     */
+    @CheckForNull
+    private transient volatile String persisted;
+
     protected AbstractAwsGlobalConfiguration() {}
 
+    @Override
+    public synchronized void load() {
+        super.load();
+        XmlFile file = getConfigFile();
+        persisted = file.exists() ? file.getXStream().toXML(this) : null;
+    }
+
+    /**
+     * Writes the configuration file, unless the serialized configuration is the same as the persisted one.
+     */
+    @Override
+    public synchronized void save() {
+        if (BulkChange.contains(this)) {
+            return;
+        }
+        String xml = getConfigFile().getXStream().toXML(this);
+        if (xml.equals(persisted)) {
+            LOGGER.log(Level.FINE, "{0} did not change, not saving it", getId());
+            return;
+        }
+        XmlFile file = getConfigFile();
+        try {
+            file.write(this);
+            persisted = xml;
+            SaveableListener.fireOnChange(this, file);
+        } catch (IOException e) {
+            LOGGER.log(Level.WARNING, "Failed to save " + file, e);
+        }
+    }
+
+    /**
+     * Binds the form to the configuration and saves it once, rather than once per property.
+     */
+    @Override
+    public boolean configure(StaplerRequest2 req, JSONObject json) throws FormException {
+        try (BulkChange bc = new BulkChange(this)) {
+            boolean result = super.configure(req, json);
+            bc.commit();
+            return result;
+        } catch (IOException e) {
+            throw new FormException(e, getId());
+        }
+    }
+
+    /**
+     * @return the serialized configuration, to put it back with {@link #restore(String)}.
+     */
+    @NonNull
+    String snapshot() {
+        return getConfigFile().getXStream().toXML(this);
+    }
+
+    /**
+     * Puts back the configuration as it was when the snapshot was taken, without saving it. Fields that are missing
+     * from the snapshot, i.e. that were null, are reset as well, like {@link XmlFile#unmarshalNullingOut(Object)} does.
+     */
+    void restore(@NonNull String snapshot) {
+        XStream2 xs = (XStream2) getConfigFile().getXStream();
+        xs.unmarshal(XStream2.getDefaultDriver().createReader(new StringReader(snapshot)), this, null, true);
+    }
+
     @Override
     public GlobalConfigurationCategory getCategory() {
         return GlobalConfigurationCategory.get(AwsGlobalConfigurationCategory.class);
@@ -52,7 +133,17 @@ public abstract class AbstractAwsGlobalConfiguration extends GlobalConfiguration
         LOGGER.log(Level.FINEST, t.getMessage(), t);
 
         String msg = t.getMessage();
-        String className = t.getClass().getSimpleName();
-        return className + ": " + StringUtils.defaultIfBlank(msg, "Unknown error");
+        return processExceptionType(t) + ": " + StringUtils.defaultIfBlank(msg, "Unknown error");
+    }
+
+    /**
+     * it returns the type of an exception, used to classify errors.
+     *
+     * @param t
+     *            Throwable to process.
+     * @return the simple class name of the exception.
+     */
+    protected String processExceptionType(Throwable t) {
+        return t.getClass().getSimpleName();
     }
 }
@@ -0,0 +1,176 @@
+package io.jenkins.plugins.aws.global_configuration;
+
+import edu.umd.cs.findbugs.annotations.CheckForNull;
+import edu.umd.cs.findbugs.annotations.NonNull;
+import hudson.Util;
+import java.time.Duration;
+import java.util.function.Supplier;
+import software.amazon.awssdk.awscore.client.builder.AwsClientBuilder;
+import software.amazon.awssdk.awscore.client.builder.AwsSyncClientBuilder;
+import software.amazon.awssdk.core.SdkClient;
+import software.amazon.awssdk.http.ExecutableHttpRequest;
+import software.amazon.awssdk.http.HttpExecuteRequest;
+import software.amazon.awssdk.http.SdkHttpClient;
+import software.amazon.awssdk.http.apache.ApacheHttpClient;
+import software.amazon.awssdk.regions.Region;
+
+/**
+ * Builds the AWS SDK clients of the plugins using this configuration. Every client shares a single HTTP connection
+ * pool, and gets the session credentials of {@link CredentialsAwsGlobalConfiguration} through a
+ * {@link SessionCredentialsProvider}. Clients are cached per service, region and credentials. As their credentials
+ * provider always resolves the current session credentials, clients are kept when the Jenkins credentials change, and
+ * only retired when the configured region or credentials id change, or when there are too many, see
+ * {@link #client(Class, Supplier, String, String)}.
+ *
+ * <pre>
+ * S3Client s3 = CredentialsAwsGlobalConfiguration.get().getClientFactory()
+ *         .client(S3Client.class, S3Client::builder, region, credentialsId);
+ * </pre>
+ *
+ * @see CredentialsAwsGlobalConfiguration#getClientFactory()
+ */
+public final class AwsClientFactory {
+
+    /**
+     * Maximum number of connections of the shared HTTP connection pool.
+     */
+    @SuppressWarnings("FieldMayBeFinal")
+    private static int MAX_CONNECTIONS = Integer.getInteger(AwsClientFactory.class.getName() + ".maxConnections", 50);
+
+    /**
+     * Seconds after which an idle connection of the shared HTTP connection pool is closed.
+     */
+    @SuppressWarnings("FieldMayBeFinal")
+    private static int CONNECTION_MAX_IDLE =
+            Integer.getInteger(AwsClientFactory.class.getName() + ".connectionMaxIdle", 60);
+
+    /**
+     * Whether the connections of the shared HTTP connection pool use TCP keep-alive.
+     */
+    @SuppressWarnings("FieldMayBeFinal")
+    private static boolean TCP_KEEP_ALIVE = Boolean.parseBoolean(
+            System.getProperty(AwsClientFactory.class.getName() + ".tcpKeepAlive", "true"));
+
+    /**
+     * Maximum number of clients kept open.
+     */
+    @SuppressWarnings("FieldMayBeFinal")
+    private static int MAX_CLIENTS = Integer.getInteger(AwsClientFactory.class.getName() + ".maxClients", 64);
+
+    private final CredentialsAwsGlobalConfiguration configuration;
+
+    private final ClientCache<Key, SdkClient> clients = new ClientCache<>("AWS clients", () -> MAX_CLIENTS);
+
+    @CheckForNull
+    private SdkHttpClient httpClient;
+
+    AwsClientFactory(@NonNull CredentialsAwsGlobalConfiguration configuration) {
+        this.configuration = configuration;
+    }
+
+    /**
+     * Returns the client of a service for the given region and credentials, building it on first use. The client is
+     * owned by the factory, callers must not close it. Look the client up for each use rather than keeping it: it is
+     * retired when the configured region or credentials id change, or when it is the least recently used of too many
+     * clients, and closed a minute after it was last returned.
+     *
+     * @param type
+     *            the interface of the client, e.g. {@code S3Client.class}.
+     * @param builder
+     *            creates the builder of the client, e.g. {@code S3Client::builder}.
+     * @param region
+     *            the region of the client, or {@code null} for the configured region.
+     * @param credentialsId
+     *            the id of the AWS credentials, or {@code null} for the configured credentials.
+     */
+    @NonNull
+    public <C extends SdkClient, B extends AwsClientBuilder<B, C> & AwsSyncClientBuilder<B, C>> C client(
+            @NonNull Class<C> type,
+            @NonNull Supplier<B> builder,
+            @CheckForNull String region,
+            @CheckForNull String credentialsId) {
+        Key key = new Key(
+                type,
+                Util.fixEmpty(region) != null ? region : configuration.getRegion(),
+                Util.fixEmpty(credentialsId) != null ? credentialsId : configuration.getCredentialsId());
+        return type.cast(clients.get(key, it -> {
+            B b = builder.get()
+                    .httpClient(getHttpClient())
+                    .credentialsProvider(configuration.sessionCredentialsProvider(it.region(), it.credentialsId()));
+            if (it.region() != null) {
+                b.region(Region.of(it.region()));
+            }
+            return b.build();
+        }));
+    }
+
+    /**
+     * Returns the HTTP client shared by every AWS client of Jenkins. It is owned by the factory, closing it has no
+     * effect.
+     */
+    @NonNull
+    public SdkHttpClient getHttpClient() {
+        SdkHttpClient shared;
+        synchronized (this) {
+            if (httpClient == null) {
+                httpClient = ApacheHttpClient.builder()
+                        .maxConnections(MAX_CONNECTIONS)
+                        .connectionMaxIdleTime(Duration.ofSeconds(CONNECTION_MAX_IDLE))
+                        .tcpKeepAlive(TCP_KEEP_ALIVE)
+                        .build();
+            }
+            shared = httpClient;
+        }
+        return new SharedHttpClient(shared);
+    }
+
+    /**
+     * Retires every client when the configured region or credentials id change, new ones are built on demand.
+     */
+    void retireClients() {
+        clients.retireAll();
+    }
+
+    /**
+     * Closes every client and the shared HTTP connection pool.
+     */
+    void close() {
+        clients.close();
+        SdkHttpClient toClose;
+        synchronized (this) {
+            toClose = httpClient;
+            httpClient = null;
+        }
+        if (toClose != null) {
+            toClose.close();
+        }
+    }
+
+    private record Key(@NonNull Class<?> type, @CheckForNull String region, @CheckForNull String credentialsId) {}
+
+    /**
+     * The shared HTTP client, which the clients using it cannot close.
+     */
+    private static final class SharedHttpClient implements SdkHttpClient {
+        private final SdkHttpClient delegate;
+
+        SharedHttpClient(SdkHttpClient delegate) {
+            this.delegate = delegate;
+        }
+
+        @Override
+        public ExecutableHttpRequest prepareRequest(HttpExecuteRequest request) {
+            return delegate.prepareRequest(request);
+        }
+
+        @Override
+        public String clientName() {
+            return delegate.clientName();
+        }
+
+        @Override
+        public void close() {
+            // closed by the factory
+        }
+    }
+}
@@ -0,0 +1,94 @@
+package io.jenkins.plugins.aws.global_configuration;
+
+import edu.umd.cs.findbugs.annotations.CheckForNull;
+import edu.umd.cs.findbugs.annotations.NonNull;
+
+/**
+ * Change of {@link CredentialsAwsGlobalConfiguration}, with the region and credentials id before and after it.
+ *
+ * @see AwsConfigurationListener
+ */
+public final class AwsConfigurationEvent {
+
+    /**
+     * What changed.
+     */
+    public enum Type {
+        /**
+         * The region was set.
+         */
+        REGION,
+        /**
+         * The credentials id was set.
+         */
+        CREDENTIALS_ID,
+        /**
+         * The region, the credentials id or both were changed together, e.g. from the web UI.
+         */
+        CONFIGURATION,
+        /**
+         * The Jenkins credentials of the credentials id were updated, the region and the credentials id did not
+         * change.
+         */
+        CREDENTIALS
+    }
+
+    @NonNull
+    private final Type type;
+
+    @CheckForNull
+    private final String oldRegion;
+
+    @CheckForNull
+    private final String newRegion;
+
+    @CheckForNull
+    private final String oldCredentialsId;
+
+    @CheckForNull
+    private final String newCredentialsId;
+
+    AwsConfigurationEvent(
+            @NonNull Type type,
+            @CheckForNull String oldRegion,
+            @CheckForNull String newRegion,
+            @CheckForNull String oldCredentialsId,
+            @CheckForNull String newCredentialsId) {
+        this.type = type;
+        this.oldRegion = oldRegion;
+        this.newRegion = newRegion;
+        this.oldCredentialsId = oldCredentialsId;
+        this.newCredentialsId = newCredentialsId;
+    }
+
+    @NonNull
+    public Type getType() {
+        return type;
+    }
+
+    @CheckForNull
+    public String getOldRegion() {
+        return oldRegion;
+    }
+
+    @CheckForNull
+    public String getNewRegion() {
+        return newRegion;
+    }
+
+    @CheckForNull
+    public String getOldCredentialsId() {
+        return oldCredentialsId;
+    }
+
+    @CheckForNull
+    public String getNewCredentialsId() {
+        return newCredentialsId;
+    }
+
+    @Override
+    public String toString() {
+        return "AwsConfigurationEvent[type=" + type + ", region=" + oldRegion + " -> " + newRegion + ", credentialsId="
+                + oldCredentialsId + " -> " + newCredentialsId + "]";
+    }
+}
@@ -0,0 +1,75 @@
+package io.jenkins.plugins.aws.global_configuration;
+
+import edu.umd.cs.findbugs.annotations.NonNull;
+import hudson.ExtensionList;
+import hudson.ExtensionPoint;
+import hudson.util.DaemonThreadFactory;
+import hudson.util.NamingThreadFactory;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Supplier;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Notified when the region or the credentials of {@link CredentialsAwsGlobalConfiguration} change, so consumers can
+ * keep what they derive from them, e.g. AWS clients, until they are told to discard it.
+ * <p>
+ * Listeners are called after the change is saved, one event at a time and in order, on a thread of their own, so they
+ * never slow down the code saving the configuration.
+ */
+public abstract class AwsConfigurationListener implements ExtensionPoint {
+
+    private static final Logger LOGGER = Logger.getLogger(AwsConfigurationListener.class.getName());
+
+    private static final ThreadPoolExecutor EXECUTOR = createExecutor();
+
+    /**
+     * Called after the configuration changed.
+     */
+    public abstract void onChange(@NonNull AwsConfigurationEvent event);
+
+    @NonNull
+    public static ExtensionList<AwsConfigurationListener> all() {
+        return ExtensionList.lookup(AwsConfigurationListener.class);
+    }
+
+    /**
+     * Notifies the listeners asynchronously.
+     *
+     * @param event
+     *            computed asynchronously as well, nothing is notified if it is null.
+     */
+    static void fire(@NonNull Supplier<AwsConfigurationEvent> event) {
+        EXECUTOR.execute(() -> {
+            AwsConfigurationEvent e = event.get();
+            if (e != null) {
+                notify(e);
+            }
+        });
+    }
+
+    private static void notify(AwsConfigurationEvent event) {
+        LOGGER.log(Level.FINE, "Notifying {0}", event);
+        for (AwsConfigurationListener listener : all()) {
+            try {
+                listener.onChange(event);
+            } catch (RuntimeException e) {
+                LOGGER.log(Level.WARNING, listener + " failed to handle " + event, e);
+            }
+        }
+    }
+
+    private static ThreadPoolExecutor createExecutor() {
+        ThreadPoolExecutor executor = new ThreadPoolExecutor(
+                1,
+                1,
+                60,
+                TimeUnit.SECONDS,
+                new LinkedBlockingQueue<>(),
+                new NamingThreadFactory(new DaemonThreadFactory(), AwsConfigurationListener.class.getSimpleName()));
+        executor.allowCoreThreadTimeOut(true);
+        return executor;
+    }
+}
@@ -11,12 +11,24 @@ import hudson.model.ManagementLink;
 import hudson.util.FormApply;
 import jakarta.servlet.ServletException;
 import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 import jenkins.model.GlobalConfigurationCategory;
 import jenkins.model.Jenkins;
+import jenkins.util.Timer;
 import net.sf.json.JSONObject;
 import org.jenkinsci.Symbol;
+import org.kohsuke.accmod.Restricted;
+import org.kohsuke.accmod.restrictions.NoExternalUse;
 import org.kohsuke.stapler.StaplerRequest2;
 import org.kohsuke.stapler.StaplerResponse2;
 import org.kohsuke.stapler.verb.POST;
@@ -63,33 +75,96 @@ public class AwsManagementLink extends ManagementLink implements Describable<Aws
         return Jenkins.get().getDescriptorOrDie(AwsManagementLink.class);
     }
 
+    /**
+     * Used by the {@code stats} view.
+     */
+    @Restricted(NoExternalUse.class)
+    public CredentialsResolutionMetrics getMetrics() {
+        return CredentialsAwsGlobalConfiguration.get().getMetrics();
+    }
+
     @POST
     public synchronized void doConfigure(StaplerRequest2 req, StaplerResponse2 rsp)
             throws IOException, ServletException, Descriptor.FormException {
         Jenkins.get().checkPermission(Jenkins.ADMINISTER);
-        // for compatibility reasons, the actual value is stored in Jenkins
-        BulkChange bc = new BulkChange(Jenkins.get());
-        try {
-            boolean result = configure(req, req.getSubmittedForm());
-            LOGGER.log(Level.FINE, "security saved: " + result);
-            Jenkins.get().save();
-            FormApply.success(req.getContextPath() + "/manage").generateResponse(req, rsp, null);
-        } finally {
-            bc.commit();
-        }
+        boolean result = configure(req, req.getSubmittedForm());
+        LOGGER.log(Level.FINE, "AWS configuration saved: " + result);
+        FormApply.success(req.getContextPath() + "/manage").generateResponse(req, rsp, null);
     }
 
-    public boolean configure(StaplerRequest2 req, JSONObject json) throws Descriptor.FormException {
-        boolean result = true;
+    /**
+     * Configures every descriptor of the AWS category. The {@link AbstractAwsGlobalConfiguration}s are saved to their
+     * own file once all of them are configured, in parallel, and only if they changed. If binding the form fails, they
+     * are restored as they were and nothing is saved. The Jenkins configuration is only saved when other descriptors,
+     * which may keep their configuration in it, are part of the category.
+     */
+    public synchronized boolean configure(StaplerRequest2 req, JSONObject json) throws Descriptor.FormException {
+        List<Descriptor<?>> descriptors = new ArrayList<>();
         for (Descriptor<?> d : Functions.getSortedDescriptorsForGlobalConfigByDescriptor(
                 descriptor -> FILTER.apply(descriptor.getCategory()))) {
-            result &= configureDescriptor(req, json, d);
+            descriptors.add(d);
         }
+        boolean saveJenkins = descriptors.stream().anyMatch(d -> !(d instanceof AbstractAwsGlobalConfiguration));
+        BulkChange bc = saveJenkins ? new BulkChange(Jenkins.get()) : null;
+        try {
+            List<AbstractAwsGlobalConfiguration> configured = new ArrayList<>();
+            boolean result = bind(req, json, descriptors, configured);
+            save(configured);
+            if (bc != null) {
+                bc.commit();
+            }
+            return result;
+        } catch (IOException e) {
+            throw new Descriptor.FormException(e, "configure");
+        } finally {
+            if (bc != null) {
+                bc.abort();
+            }
+        }
+    }
 
-        return result;
+    /**
+     * Binds the form to every descriptor, the AWS configurations are not saved meanwhile. They are restored if any
+     * descriptor fails to bind.
+     *
+     * @param configured
+     *            receives the AWS configurations to save.
+     */
+    private static boolean bind(
+            StaplerRequest2 req,
+            JSONObject json,
+            List<Descriptor<?>> descriptors,
+            List<AbstractAwsGlobalConfiguration> configured)
+            throws Descriptor.FormException {
+        Map<AbstractAwsGlobalConfiguration, String> before = new LinkedHashMap<>();
+        Deque<BulkChange> bulkChanges = new ArrayDeque<>();
+        boolean bound = false;
+        try {
+            for (Descriptor<?> d : descriptors) {
+                if (d instanceof AbstractAwsGlobalConfiguration configuration) {
+                    before.put(configuration, configuration.snapshot());
+                    bulkChanges.push(new BulkChange(configuration));
+                }
+            }
+            boolean result = true;
+            for (Descriptor<?> d : descriptors) {
+                result &= configureDescriptor(req, json, d);
+            }
+            bound = true;
+            configured.addAll(before.keySet());
+            return result;
+        } finally {
+            // closed in the reverse order of their creation
+            while (!bulkChanges.isEmpty()) {
+                bulkChanges.pop().abort();
+            }
+            if (!bound) {
+                before.forEach(AbstractAwsGlobalConfiguration::restore);
+            }
+        }
     }
 
-    private boolean configureDescriptor(StaplerRequest2 req, JSONObject json, Descriptor<?> d)
+    private static boolean configureDescriptor(StaplerRequest2 req, JSONObject json, Descriptor<?> d)
             throws Descriptor.FormException {
         // collapse the structure to remain backward compatible with the JSON structure before 1.
         String name = d.getJsonSafeClassName();
@@ -99,6 +174,30 @@ public class AwsManagementLink extends ManagementLink implements Describable<Aws
         return d.configure(req, js);
     }
 
+    /**
+     * Saves the configurations in parallel, each one only writes its file if it changed.
+     */
+    private static void save(List<AbstractAwsGlobalConfiguration> descriptors) throws IOException {
+        if (descriptors.size() == 1) {
+            descriptors.get(0).save();
+            return;
+        }
+        List<Future<?>> saves = new ArrayList<>();
+        for (AbstractAwsGlobalConfiguration d : descriptors) {
+            saves.add(Timer.get().submit(d::save));
+        }
+        for (Future<?> save : saves) {
+            try {
+                save.get();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new InterruptedIOException("Interrupted while saving the AWS configuration");
+            } catch (ExecutionException e) {
+                throw new IOException(e.getCause());
+            }
+        }
+    }
+
     public static final Predicate<GlobalConfigurationCategory> FILTER = new Predicate<GlobalConfigurationCategory>() {
         @Override
         public boolean apply(GlobalConfigurationCategory input) {
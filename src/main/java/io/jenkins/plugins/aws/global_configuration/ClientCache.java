@@ -0,0 +1,249 @@
+package io.jenkins.plugins.aws.global_configuration;
+
+import edu.umd.cs.findbugs.annotations.CheckForNull;
+import edu.umd.cs.findbugs.annotations.NonNull;
+import java.time.Clock;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.Comparator;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Function;
+import java.util.function.IntSupplier;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+import jenkins.util.Timer;
+import software.amazon.awssdk.utils.SdkAutoCloseable;
+
+/**
+ * Long-lived AWS SDK clients, built on first use and kept until there are too many, then the least recently used one
+ * is retired. Retired clients are closed once no call uses them anymore: calls made under a {@link Lease} are waited
+ * for, clients handed out without one are given {@link #RETIRE_DELAY} to complete the calls of their callers.
+ *
+ * @param <K> what the clients are built for.
+ * @param <C> the type of the clients.
+ */
+final class ClientCache<K, C extends SdkAutoCloseable> {
+
+    private static final Logger LOGGER = Logger.getLogger(ClientCache.class.getName());
+
+    /**
+     * Seconds a retired client handed out without a lease is kept open after it was last handed out.
+     */
+    @SuppressWarnings("FieldMayBeFinal")
+    private static int RETIRE_DELAY = Integer.getInteger(ClientCache.class.getName() + ".retireDelay", 60);
+
+    private final String name;
+
+    private final IntSupplier maxClients;
+
+    private final Clock clock;
+
+    private final ConcurrentMap<K, Client<C>> clients = new ConcurrentHashMap<>();
+
+    private final AtomicLong uses = new AtomicLong();
+
+    /**
+     * @param name
+     *            what the clients are, for logging.
+     * @param maxClients
+     *            the maximum number of clients kept.
+     */
+    ClientCache(@NonNull String name, @NonNull IntSupplier maxClients) {
+        this(name, maxClients, Clock.systemUTC());
+    }
+
+    ClientCache(@NonNull String name, @NonNull IntSupplier maxClients, @NonNull Clock clock) {
+        this.name = name;
+        this.maxClients = maxClients;
+        this.clock = clock;
+    }
+
+    /**
+     * Returns the client for the given key, building it on first use. It is not closed until the lease is closed.
+     */
+    @NonNull
+    Lease<C> acquire(@NonNull K key, @NonNull Function<K, C> create) {
+        while (true) {
+            Client<C> client = clients.get(key);
+            if (client == null) {
+                if (clients.size() >= maxClients.getAsInt()) {
+                    evictLeastRecentlyUsed();
+                }
+                client = clients.computeIfAbsent(key, it -> new Client<>(create.apply(it)));
+            }
+            client.lastUse = uses.incrementAndGet();
+            if (client.acquire()) {
+                return new Lease<>(client, clock);
+            }
+            // retired meanwhile, it is replaced by a new one
+            clients.remove(key, client);
+        }
+    }
+
+    /**
+     * Returns the client for the given key, building it on first use. Callers do not tell when they are done with it,
+     * so once retired it is kept open for {@link #RETIRE_DELAY} after it was last handed out.
+     */
+    @NonNull
+    C get(@NonNull K key, @NonNull Function<K, C> create) {
+        try (Lease<C> lease = acquire(key, create)) {
+            lease.client.handOut(clock.instant());
+            return lease.get();
+        }
+    }
+
+    /**
+     * Retires the least recently used clients, down to one less than the maximum.
+     */
+    private synchronized void evictLeastRecentlyUsed() {
+        while (!clients.isEmpty() && clients.size() >= maxClients.getAsInt()) {
+            clients.entrySet().stream()
+                    .min(Comparator.comparingLong(it -> it.getValue().lastUse))
+                    .filter(it -> clients.remove(it.getKey(), it.getValue()))
+                    .ifPresent(it -> {
+                        LOGGER.log(Level.FINE, "Too many {0} open, retiring the one for {1}", new Object[] {
+                            name, it.getKey()
+                        });
+                        it.getValue().retire(clock);
+                    });
+        }
+    }
+
+    /**
+     * Retires every client, new ones are built on demand.
+     */
+    void retireAll() {
+        for (Map.Entry<K, Client<C>> it : clients.entrySet()) {
+            if (clients.remove(it.getKey(), it.getValue())) {
+                it.getValue().retire(clock);
+            }
+        }
+    }
+
+    /**
+     * Closes every client now, even if in use, when Jenkins stops.
+     */
+    void close() {
+        for (Map.Entry<K, Client<C>> it : clients.entrySet()) {
+            if (clients.remove(it.getKey(), it.getValue())) {
+                it.getValue().close();
+            }
+        }
+    }
+
+    int size() {
+        return clients.size();
+    }
+
+    /**
+     * A client along with the number of calls in progress with it, so it is not closed under them.
+     */
+    private static final class Client<C extends SdkAutoCloseable> {
+        private final C sdk;
+        private volatile long lastUse;
+        private int users;
+        private boolean retired;
+        private boolean closed;
+
+        @CheckForNull
+        private Instant handedOut;
+
+        Client(C sdk) {
+            this.sdk = sdk;
+        }
+
+        /**
+         * @return false if the client was retired, it must not be used anymore.
+         */
+        synchronized boolean acquire() {
+            if (retired) {
+                return false;
+            }
+            users++;
+            return true;
+        }
+
+        synchronized void handOut(Instant now) {
+            handedOut = now;
+        }
+
+        void release(Clock clock) {
+            synchronized (this) {
+                users--;
+            }
+            closeIfUnused(clock);
+        }
+
+        /**
+         * Closes the client once it is not used anymore.
+         */
+        void retire(Clock clock) {
+            synchronized (this) {
+                retired = true;
+            }
+            closeIfUnused(clock);
+        }
+
+        private void closeIfUnused(Clock clock) {
+            Duration delay;
+            boolean close;
+            synchronized (this) {
+                if (!retired || users > 0 || closed) {
+                    return;
+                }
+                delay = handedOut != null
+                        ? Duration.between(clock.instant(), handedOut.plusSeconds(RETIRE_DELAY))
+                        : Duration.ZERO;
+                close = delay.isNegative() || delay.isZero();
+                closed = close;
+            }
+            if (close) {
+                sdk.close();
+            } else {
+                Timer.get().schedule(() -> closeIfUnused(clock), delay.toMillis(), TimeUnit.MILLISECONDS);
+            }
+        }
+
+        void close() {
+            synchronized (this) {
+                if (closed) {
+                    return;
+                }
+                retired = true;
+                closed = true;
+            }
+            sdk.close();
+        }
+    }
+
+    /**
+     * The use of a client, which is not closed before the lease is.
+     */
+    static final class Lease<C extends SdkAutoCloseable> implements AutoCloseable {
+        private final Client<C> client;
+        private final Clock clock;
+        private boolean released;
+
+        private Lease(Client<C> client, Clock clock) {
+            this.client = client;
+            this.clock = clock;
+        }
+
+        @NonNull
+        C get() {
+            return client.sdk;
+        }
+
+        @Override
+        public void close() {
+            if (!released) {
+                released = true;
+                client.release(clock);
+            }
+        }
+    }
+}
@@ -27,39 +27,59 @@ package io.jenkins.plugins.aws.global_configuration;
 import com.amazonaws.auth.AWSSessionCredentials;
 import com.amazonaws.auth.BasicSessionCredentials;
 import com.amazonaws.client.builder.AwsClientBuilder;
+import com.cloudbees.jenkins.plugins.awscredentials.AWSCredentialsImpl;
 import com.cloudbees.jenkins.plugins.awscredentials.AmazonWebServicesCredentials;
-import com.cloudbees.plugins.credentials.CredentialsMatchers;
-import com.cloudbees.plugins.credentials.CredentialsProvider;
+import com.cloudbees.plugins.credentials.CredentialsNameProvider;
+import com.cloudbees.plugins.credentials.SystemCredentialsProvider;
 import edu.umd.cs.findbugs.annotations.CheckForNull;
 import edu.umd.cs.findbugs.annotations.NonNull;
+import hudson.BulkChange;
 import hudson.Extension;
 import hudson.ExtensionList;
 import hudson.Util;
+import hudson.XmlFile;
+import hudson.init.Terminator;
 import hudson.model.Failure;
-import hudson.security.ACL;
+import hudson.model.Saveable;
+import hudson.model.listeners.SaveableListener;
+import hudson.util.DaemonThreadFactory;
 import hudson.util.FormValidation;
 import hudson.util.ListBoxModel;
+import hudson.util.NamingThreadFactory;
 import java.io.IOException;
-import java.util.Collections;
+import java.time.Clock;
+import java.time.Duration;
+import java.util.Arrays;
+import java.util.List;
 import java.util.Objects;
-import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.Future;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicLong;
 import jenkins.model.Jenkins;
+import net.sf.json.JSONArray;
+import net.sf.json.JSONObject;
 import org.apache.commons.lang.StringUtils;
 import org.jenkinsci.Symbol;
 import org.kohsuke.accmod.Restricted;
 import org.kohsuke.accmod.restrictions.NoExternalUse;
 import org.kohsuke.stapler.DataBoundSetter;
+import org.kohsuke.stapler.HttpResponse;
+import org.kohsuke.stapler.HttpResponses;
 import org.kohsuke.stapler.QueryParameter;
+import org.kohsuke.stapler.StaplerRequest2;
 import org.kohsuke.stapler.interceptor.RequirePOST;
 import software.amazon.awssdk.auth.credentials.AwsCredentials;
-import software.amazon.awssdk.auth.credentials.AwsCredentialsProvider;
 import software.amazon.awssdk.auth.credentials.AwsSessionCredentials;
 import software.amazon.awssdk.auth.credentials.DefaultCredentialsProvider;
-import software.amazon.awssdk.auth.credentials.StaticCredentialsProvider;
 import software.amazon.awssdk.regions.Region;
-import software.amazon.awssdk.regions.RegionMetadata;
 import software.amazon.awssdk.services.sts.StsClient;
-import software.amazon.awssdk.services.sts.StsClientBuilder;
 import software.amazon.awssdk.services.sts.model.Credentials;
 import software.amazon.awssdk.services.sts.model.GetSessionTokenRequest;
 import software.amazon.awssdk.services.sts.model.GetSessionTokenResponse;
@@ -78,101 +98,303 @@ public final class CredentialsAwsGlobalConfiguration extends AbstractAwsGlobalCo
     private static int SESSION_DURATION =
             Integer.getInteger(CredentialsAwsGlobalConfiguration.class.getName() + ".sessionDuration", 3600);
 
+    /**
+     * Shortest and longest session token durations accepted by GetSessionToken.
+     */
+    private static final Duration MIN_SESSION_DURATION = Duration.ofMinutes(15);
+
+    private static final Duration MAX_SESSION_DURATION = Duration.ofHours(36);
+
+    /**
+     * Maximum number of credentials listed at once in the credentials list of the configuration page.
+     */
+    @SuppressWarnings("FieldMayBeFinal")
+    private static int CREDENTIALS_PAGE_SIZE =
+            Integer.getInteger(CredentialsAwsGlobalConfiguration.class.getName() + ".credentialsPageSize", 100);
+
+    /**
+     * Maximum number of threads resolving session credentials for {@link #sessionCredentialsAsync(String, String)}.
+     */
+    @SuppressWarnings("FieldMayBeFinal")
+    private static int ASYNC_THREADS =
+            Integer.getInteger(CredentialsAwsGlobalConfiguration.class.getName() + ".asyncThreads", 8);
+
+    /**
+     * Maximum number of asynchronous session credentials requests waiting for a thread.
+     */
+    @SuppressWarnings("FieldMayBeFinal")
+    private static int ASYNC_QUEUE_SIZE =
+            Integer.getInteger(CredentialsAwsGlobalConfiguration.class.getName() + ".asyncQueueSize", 1000);
+
     /**
      * force the region to use for the presigned S3 URLs generated.
      */
-    private String region;
+    private volatile String region;
 
     /**
      * AWS credentials to access to the S3 Bucket, if it is empty, it would use the IAM instance profile from the
      * jenkins hosts.
      */
-    private String credentialsId;
+    private volatile String credentialsId;
+
+    private final transient SessionCredentialsCache sessionCredentialsCache = new SessionCredentialsCache();
+
+    private final transient SessionCredentialsStore sessionCredentialsStore =
+            new SessionCredentialsStore(sessionCredentialsCache, this::sessionCredentialsSource);
+
+    /**
+     * Whether the session credentials stored on disk were put back in the cache, done on first use. Nothing is written
+     * to disk before, the file would lose the stored session credentials.
+     */
+    private transient volatile boolean sessionCredentialsRestored;
+
+    private final transient AwsClientFactory clientFactory = new AwsClientFactory(this);
+
+    private final transient StsClients stsClients = new StsClients(clientFactory);
+
+    private final transient ConcurrentMap<List<String>, S3UrlSigner> s3UrlSigners = new ConcurrentHashMap<>();
+
+    private final transient StsCallGuard stsCallGuard = new StsCallGuard();
+
+    private final transient CredentialsIndex credentialsIndex = new CredentialsIndex();
+
+    /**
+     * Incremented whenever the configuration or the credentials change, so agents drop the session credentials they
+     * keep, see {@link RemoteSessionCredentialsProvider}.
+     */
+    private final transient AtomicLong generation = new AtomicLong();
+
+    private final transient CredentialsValidator credentialsValidator =
+            new CredentialsValidator(stsClients, this::getCredentials, Clock.systemUTC());
+
+    private final transient CredentialsResolutionMetrics metrics =
+            new CredentialsResolutionMetrics(sessionCredentialsCache, stsCallGuard);
+
+    private final transient ThreadPoolExecutor asyncExecutor = createAsyncExecutor();
+
+    private final transient Object instanceProfileLock = new Object();
+
+    /**
+     * Credentials provider of the instance profile or user AWS configuration, created on first use.
+     */
+    @CheckForNull
+    private transient volatile InstanceProfileProvider instanceProfileCredentialsProvider;
+
+    /**
+     * Whether the configuration file has been read, see {@link #ensureLoaded()}.
+     */
+    private transient volatile boolean loaded;
+
+    /**
+     * Region and credentials id before the changes made within a {@link BulkChange}, notified once they are saved.
+     */
+    @CheckForNull
+    private transient volatile Values changedFrom;
 
     public CredentialsAwsGlobalConfiguration() {
-        load();
+        // loaded on first use, not while extensions are discovered
     }
 
     /**
      * Testing only
      */
     @Restricted(NoExternalUse.class)
-    protected CredentialsAwsGlobalConfiguration(boolean test) {}
+    protected CredentialsAwsGlobalConfiguration(boolean test) {
+        loaded = true;
+    }
+
+    @Override
+    public synchronized void load() {
+        super.load();
+        loaded = true;
+    }
+
+    /**
+     * Reads the configuration file the first time the configuration is used, keeping the file I/O and the XStream
+     * deserialization off the startup of Jenkins.
+     */
+    private void ensureLoaded() {
+        if (!loaded) {
+            synchronized (this) {
+                if (!loaded) {
+                    load();
+                }
+            }
+        }
+    }
+
+    @Override
+    public synchronized void save() {
+        // never overwrite the configuration file with a configuration that was not read from it
+        ensureLoaded();
+        super.save();
+        Values from = changedFrom;
+        if (from != null && !BulkChange.contains(this)) {
+            changedFrom = null;
+            if (!Objects.equals(from.region(), region) || !Objects.equals(from.credentialsId(), credentialsId)) {
+                AwsConfigurationEvent event = new AwsConfigurationEvent(
+                        AwsConfigurationEvent.Type.CONFIGURATION,
+                        from.region(),
+                        region,
+                        from.credentialsId(),
+                        credentialsId);
+                AwsConfigurationListener.fire(() -> event);
+            }
+        }
+    }
+
+    @Override
+    public boolean configure(StaplerRequest2 req, JSONObject json) throws FormException {
+        try {
+            return super.configure(req, json);
+        } finally {
+            if (!BulkChange.contains(this)) {
+                // notified once saved, or never if the form failed to bind
+                changedFrom = null;
+            }
+        }
+    }
+
+    /**
+     * Notifies the {@link AwsConfigurationListener}s of a change, once saved.
+     */
+    private void onChanged(
+            @NonNull AwsConfigurationEvent.Type type,
+            @CheckForNull String oldRegion,
+            @CheckForNull String oldCredentialsId) {
+        if (BulkChange.contains(this)) {
+            if (changedFrom == null) {
+                changedFrom = new Values(oldRegion, oldCredentialsId);
+            }
+            return;
+        }
+        AwsConfigurationEvent event =
+                new AwsConfigurationEvent(type, oldRegion, region, oldCredentialsId, credentialsId);
+        AwsConfigurationListener.fire(() -> event);
+    }
+
+    /**
+     * Reads the configuration file first, so the snapshot is not taken of the defaults.
+     */
+    @NonNull
+    @Override
+    String snapshot() {
+        ensureLoaded();
+        return super.snapshot();
+    }
+
+    @Override
+    synchronized void restore(@NonNull String snapshot) {
+        super.restore(snapshot);
+        // the changes were never saved, so there is nothing to notify
+        changedFrom = null;
+        onConfigurationChanged();
+    }
 
     public String getRegion() {
+        ensureLoaded();
         return region;
     }
 
     @DataBoundSetter
     public void setRegion(String region) {
-        this.region = Util.fixEmpty(region);
         checkValue(doCheckRegion(region));
+        ensureLoaded();
+        String newRegion = Util.fixEmpty(region);
+        String oldRegion = this.region;
+        if (Objects.equals(oldRegion, newRegion)) {
+            return;
+        }
+        this.region = newRegion;
+        onConfigurationChanged();
         save();
+        onChanged(AwsConfigurationEvent.Type.REGION, oldRegion, credentialsId);
     }
 
     @CheckForNull
     public String getCredentialsId() {
+        ensureLoaded();
         return credentialsId;
     }
 
     @DataBoundSetter
     public void setCredentialsId(@CheckForNull String credentialsId) {
-        this.credentialsId = StringUtils.defaultIfBlank(credentialsId, null);
+        ensureLoaded();
+        String newCredentialsId = StringUtils.defaultIfBlank(credentialsId, null);
+        String oldCredentialsId = this.credentialsId;
+        if (Objects.equals(oldCredentialsId, newCredentialsId)) {
+            return;
+        }
+        this.credentialsId = newCredentialsId;
+        credentialsIndex.invalidate();
+        onConfigurationChanged();
         save();
+        onChanged(AwsConfigurationEvent.Type.CREDENTIALS_ID, region, oldCredentialsId);
     }
 
     @CheckForNull
     public AmazonWebServicesCredentials getCredentials() {
+        String credentialsId = getCredentialsId();
         return credentialsId != null ? getCredentials(credentialsId) : null;
     }
 
     @CheckForNull
     public AmazonWebServicesCredentials getCredentials(@NonNull String credentialsId) {
-        Optional<AmazonWebServicesCredentials> credential = CredentialsProvider.lookupCredentials(
-                        AmazonWebServicesCredentials.class, Jenkins.get(), ACL.SYSTEM, Collections.emptyList())
-                .stream()
-                .filter(it -> it.getId().equals(credentialsId))
-                .findFirst();
-        if (credential.isPresent()) {
-            return credential.get();
-        } else {
-            return null;
-        }
+        return credentialsIndex.get(credentialsId);
     }
 
     /**
      * create a AWS session credentials from a Key and a Secret configured in a AWS credential in Jenkins.
      *
-     * @return the AWS session credential result of the request to the AWS token service.
+     * @return the AWS session credential result of the request to the AWS token service, or null if the Jenkins
+     *         credential does not exist.
      */
-    private AwsSessionCredentials sessionCredentialsFromKeyAndSecret(
-            String region, @NonNull AmazonWebServicesCredentials jenkinsAwsCredentials) {
-        AwsCredentials awsCredentials = jenkinsAwsCredentials.resolveCredentials();
-
-        if (awsCredentials instanceof AwsSessionCredentials) {
-            return (AwsSessionCredentials) awsCredentials;
+    @CheckForNull
+    private SessionCredentialsCache.Cached sessionCredentialsFromKeyAndSecret(
+            @NonNull SessionCredentialsCache.Key key, int durationSeconds, @NonNull CredentialsResolutionEvent event)
+            throws IOException {
+        AmazonWebServicesCredentials jenkinsAwsCredentials = getCredentials(key.credentialsId());
+        if (jenkinsAwsCredentials == null) {
+            return null;
         }
+        long start = System.nanoTime();
+        CredentialsResolutionMetrics.Path path = CredentialsResolutionMetrics.Path.KEY_AND_SECRET;
+        event.resolvedPath = path;
+        try {
+            AwsCredentials awsCredentials = jenkinsAwsCredentials.resolveCredentials();
 
-        AwsCredentialsProvider credentialsProvider = StaticCredentialsProvider.create(awsCredentials);
-        software.amazon.awssdk.services.sts.model.Credentials credentials =
-                getSessionCredentials(credentialsProvider, region);
+            if (awsCredentials instanceof AwsSessionCredentials) {
+                path = CredentialsResolutionMetrics.Path.SESSION;
+                event.resolvedPath = path;
+                metrics.record(path, System.nanoTime() - start);
+                return new SessionCredentialsCache.Cached((AwsSessionCredentials) awsCredentials, null);
+            }
 
-        return AwsSessionCredentials.create(
-                credentials.accessKeyId(), credentials.secretAccessKey(), credentials.sessionToken());
-    }
+            software.amazon.awssdk.services.sts.model.Credentials credentials = stsCallGuard.call(key.region(), () -> {
+                event.stsAttempts++;
+                return getSessionCredentials(awsCredentials, key.region(), durationSeconds);
+            });
 
-    private Credentials getSessionCredentials(AwsCredentialsProvider credentialsProvider, String region) {
-        StsClientBuilder stsClientBuilder = StsClient.builder().credentialsProvider(credentialsProvider);
-        if (region != null) {
-            stsClientBuilder.region(Region.of(region));
+            metrics.record(path, System.nanoTime() - start);
+            storeSessionCredentials();
+            return new SessionCredentialsCache.Cached(
+                    AwsSessionCredentials.create(
+                            credentials.accessKeyId(), credentials.secretAccessKey(), credentials.sessionToken()),
+                    credentials.expiration());
+        } catch (IOException | RuntimeException e) {
+            metrics.recordFailure(path, System.nanoTime() - start, processExceptionType(e));
+            throw e;
         }
-        StsClient stsClient = stsClientBuilder.build();
+    }
 
+    private Credentials getSessionCredentials(AwsCredentials awsCredentials, String region, int durationSeconds) {
         GetSessionTokenRequest sessionTokenRequest = GetSessionTokenRequest.builder()
-                .durationSeconds(getSessionDuration())
+                .durationSeconds(durationSeconds)
                 .build();
-        GetSessionTokenResponse sessionToken = stsClient.getSessionToken(sessionTokenRequest);
-        return sessionToken.credentials();
+        try (ClientCache.Lease<StsClient> stsClient = stsClients.acquire(region, awsCredentials)) {
+            GetSessionTokenResponse sessionToken = stsClient.get().getSessionToken(sessionTokenRequest);
+            return sessionToken.credentials();
+        }
     }
 
     /**
@@ -183,18 +405,79 @@ public final class CredentialsAwsGlobalConfiguration extends AbstractAwsGlobalCo
      *             in case of error.
      */
     private AwsSessionCredentials sessionCredentialsFromInstanceProfile() throws IOException {
-        DefaultCredentialsProvider credentialsProvider = DefaultCredentialsProvider.create();
-        AwsCredentials awsCredentials = credentialsProvider.resolveCredentials();
+        long start = System.nanoTime();
+        try {
+            AwsCredentials awsCredentials = resolveInstanceProfileCredentials();
+
+            // Assume we are using session credentials
+            if (!(awsCredentials instanceof AwsSessionCredentials)) {
+                throw new IOException("No valid session credentials");
+            }
+            metrics.record(CredentialsResolutionMetrics.Path.INSTANCE_PROFILE, System.nanoTime() - start);
+            return (AwsSessionCredentials) awsCredentials;
+        } catch (IOException | RuntimeException e) {
+            metrics.recordFailure(
+                    CredentialsResolutionMetrics.Path.INSTANCE_PROFILE,
+                    System.nanoTime() - start,
+                    processExceptionType(e));
+            throw e;
+        }
+    }
+
+    /**
+     * Resolves the credentials with the provider of the instance profile, which is kept for the lifetime of the
+     * configuration. It remembers which source of the chain provided the credentials, so the chain is only walked once,
+     * and refreshes expiring credentials in the background.
+     */
+    private AwsCredentials resolveInstanceProfileCredentials() {
+        while (true) {
+            InstanceProfileProvider provider = instanceProfileCredentialsProvider();
+            // a provider discarded meanwhile is replaced by a new one
+            if (provider.acquire()) {
+                try {
+                    return provider.provider.resolveCredentials();
+                } finally {
+                    provider.release();
+                }
+            }
+        }
+    }
 
-        // Assume we are using session credentials
-        if (!(awsCredentials instanceof AwsSessionCredentials)) {
-            throw new IOException("No valid session credentials");
+    @NonNull
+    private InstanceProfileProvider instanceProfileCredentialsProvider() {
+        InstanceProfileProvider provider = instanceProfileCredentialsProvider;
+        if (provider == null) {
+            synchronized (instanceProfileLock) {
+                provider = instanceProfileCredentialsProvider;
+                if (provider == null) {
+                    provider = new InstanceProfileProvider(DefaultCredentialsProvider.builder()
+                            .asyncCredentialUpdateEnabled(true)
+                            .build());
+                    instanceProfileCredentialsProvider = provider;
+                }
+            }
         }
-        return (AwsSessionCredentials) awsCredentials;
+        return provider;
     }
 
     /**
-     * Use {@link #sessionCredentials(String, String)}
+     * Discards the credentials provider of the instance profile, a new one walks the credentials chain again. The
+     * discarded provider is closed once the resolutions in progress with it are done.
+     */
+    private void resetInstanceProfileCredentialsProvider() {
+        InstanceProfileProvider provider;
+        synchronized (instanceProfileLock) {
+            provider = instanceProfileCredentialsProvider;
+            instanceProfileCredentialsProvider = null;
+        }
+        if (provider != null) {
+            provider.retire();
+        }
+    }
+
+    /**
+     * @deprecated use {@link #sessionCredentialsProvider(String, String)} and
+     *             {@link SessionCredentialsProvider#toV1()}
      */
     @Deprecated
     public AWSSessionCredentials sessionCredentials(@NonNull AwsClientBuilder<?, ?> builder) throws IOException {
@@ -204,23 +487,382 @@ public final class CredentialsAwsGlobalConfiguration extends AbstractAwsGlobalCo
     /**
      * Select the type of AWS credential that has to be created based on the configuration. If no AWS credential is
      * provided, the IAM instance profile or user AWS configuration is used to create the AWS credentials.
+     * Session credentials obtained from the AWS token service are cached until shortly before they expire, and
+     * concurrent requests for the same session credentials share a single call to the token service.
      *
      * @return An AWS session credential.
      * @throws IOException
      *             in case of error.
      */
     public AwsSessionCredentials sessionCredentials(String region, String credentialsId) throws IOException {
-        AmazonWebServicesCredentials baseCredentials =
-                StringUtils.isNotBlank(credentialsId) ? getCredentials(credentialsId) : null;
-        if (baseCredentials != null) {
-            return sessionCredentialsFromKeyAndSecret(region, baseCredentials);
-        } else {
-            return sessionCredentialsFromInstanceProfile();
+        return resolveSessionCredentials(region, credentialsId).credentials();
+    }
+
+    /**
+     * Same as {@link #sessionCredentials(String, String)}, for callers that need the session credentials to remain
+     * valid for a while, e.g. a long upload. The cached session credentials are returned only if they remain valid for
+     * at least {@code minValidity}, otherwise new ones are requested for long enough, and cached for the other
+     * callers. The requirements only apply to session credentials requested to the AWS token service with the key
+     * and secret of a Jenkins credential.
+     *
+     * @param minValidity
+     *            how long the session credentials must remain valid, or {@code null} for no requirement. It is at most
+     *            36 hours, the longest session duration, less the margin at which the cache renews session
+     *            credentials, 10 minutes by default.
+     * @param requestedDuration
+     *            the duration of new session credentials if they have to be requested, or {@code null} for the
+     *            default. It is raised as needed to satisfy {@code minValidity}.
+     * @return An AWS session credential.
+     * @throws IOException
+     *             in case of error.
+     */
+    public AwsSessionCredentials sessionCredentials(
+            String region,
+            String credentialsId,
+            @CheckForNull Duration minValidity,
+            @CheckForNull Duration requestedDuration)
+            throws IOException {
+        return resolveSessionCredentials(region, credentialsId, minValidity, requestedDuration).credentials();
+    }
+
+    /**
+     * Same as {@link #sessionCredentials(String, String)}, along with the expiration of the session credentials when
+     * it is known.
+     */
+    @NonNull
+    SessionCredentialsCache.Cached resolveSessionCredentials(String region, String credentialsId) throws IOException {
+        return resolveSessionCredentials(region, credentialsId, null, null);
+    }
+
+    @NonNull
+    private SessionCredentialsCache.Cached resolveSessionCredentials(
+            String region,
+            String credentialsId,
+            @CheckForNull Duration minValidity,
+            @CheckForNull Duration requestedDuration)
+            throws IOException {
+        Duration requiredValidity = minValidity != null ? minValidity : Duration.ZERO;
+        Duration maxValidity = SessionCredentialsCache.maxValidityFor(MAX_SESSION_DURATION);
+        if (requiredValidity.isNegative() || requiredValidity.compareTo(maxValidity) > 0) {
+            throw new IllegalArgumentException("The minimum validity must not be negative nor exceed " + maxValidity);
+        }
+        ensureLoaded();
+        restoreSessionCredentials();
+        CredentialsResolutionEvent event =
+                new CredentialsResolutionEvent(Util.fixEmpty(region), Util.fixEmpty(credentialsId));
+        Throwable failure = null;
+        try {
+            if (StringUtils.isNotBlank(credentialsId)) {
+                // one entry serves every caller, it is only replaced by longer session credentials when too short
+                SessionCredentialsCache.Key key =
+                        new SessionCredentialsCache.Key(Util.fixEmpty(region), credentialsId, getSessionDuration());
+                int durationSeconds = sessionDurationSeconds(requiredValidity, requestedDuration);
+                event.resolvedPath = CredentialsResolutionMetrics.Path.KEY_AND_SECRET;
+                event.outcome = CredentialsResolutionEvent.CacheOutcome.HIT;
+                SessionCredentialsCache.Cached cached = sessionCredentialsCache.get(
+                        key, requiredValidity, () -> loadSessionCredentials(key, durationSeconds, event));
+                if (cached != null) {
+                    return cached;
+                }
+            }
+            event.resolvedPath = CredentialsResolutionMetrics.Path.INSTANCE_PROFILE;
+            AwsSessionCredentials credentials = sessionCredentialsFromInstanceProfile();
+            return new SessionCredentialsCache.Cached(credentials, credentials.expirationTime().orElse(null));
+        } catch (IOException | RuntimeException e) {
+            failure = e;
+            throw e;
+        } finally {
+            metrics.recordResolution(event.outcome(failure), System.nanoTime() - event.startNanos);
+            event.finish(failure);
+        }
+    }
+
+    @CheckForNull
+    private SessionCredentialsCache.Cached loadSessionCredentials(
+            SessionCredentialsCache.Key key, int durationSeconds, CredentialsResolutionEvent event) throws IOException {
+        event.outcome = CredentialsResolutionEvent.CacheOutcome.MISS;
+        try {
+            return sessionCredentialsFromKeyAndSecret(key, durationSeconds, event);
+        } catch (IOException | RuntimeException e) {
+            // the cache may serve the previous session credentials instead
+            event.outcome = CredentialsResolutionEvent.CacheOutcome.STALE;
+            throw e;
         }
     }
 
     /**
-     * @deprecated use {@link #sessionCredentials(String, String)}
+     * Provider of the session credentials for the given region and credentials, to build long-lived AWS SDK clients
+     * with. Unlike {@link #sessionCredentials(String, String)}, which returns session credentials that eventually
+     * expire, the provider resolves session credentials that are still valid every time the client needs them. Use
+     * {@link SessionCredentialsProvider#toV1()} for clients of the AWS SDK for Java 1.x.
+     *
+     * @param region
+     *            the region of the session credentials, or {@code null} for the default.
+     * @param credentialsId
+     *            the id of the AWS credentials, or {@code null} to use the instance profile or user AWS configuration.
+     */
+    @NonNull
+    public SessionCredentialsProvider sessionCredentialsProvider(
+            @CheckForNull String region, @CheckForNull String credentialsId) {
+        return new SessionCredentialsProvider(this, Util.fixEmpty(region), Util.fixEmpty(credentialsId));
+    }
+
+    /**
+     * Signer of S3 URLs with the session credentials for the given region and credentials, one is kept per region
+     * and credentials.
+     *
+     * @param region
+     *            the region of the buckets, or {@code null} for the configured region, {@code us-east-1} if there is
+     *            none.
+     * @param credentialsId
+     *            the id of the AWS credentials, or {@code null} for the configured credentials.
+     */
+    @NonNull
+    public S3UrlSigner s3UrlSigner(@CheckForNull String region, @CheckForNull String credentialsId) {
+        String signingRegion = Objects.requireNonNullElse(
+                Util.fixEmpty(region), Objects.requireNonNullElse(getRegion(), Region.US_EAST_1.id()));
+        String signingCredentialsId = Util.fixEmpty(credentialsId) != null ? credentialsId : getCredentialsId();
+        return s3UrlSigners.computeIfAbsent(
+                Arrays.asList(signingRegion, signingCredentialsId),
+                it -> new S3UrlSigner(signingRegion, sessionCredentialsProvider(signingRegion, signingCredentialsId)));
+    }
+
+    /**
+     * @return the factory of the AWS SDK clients using this configuration, which share a single HTTP connection pool.
+     */
+    @NonNull
+    public AwsClientFactory getClientFactory() {
+        return clientFactory;
+    }
+
+    @NonNull
+    StsClients getStsClients() {
+        return stsClients;
+    }
+
+    /**
+     * Provider of the session credentials to hand over to agents. Once sent to an agent, the provider asks the
+     * controller for session credentials over the remoting channel, and keeps them on the agent until shortly before
+     * they expire, so agents do not call the AWS token service or the instance metadata service themselves.
+     *
+     * @param region
+     *            the region of the session credentials, or {@code null} for the default.
+     * @param credentialsId
+     *            the id of the AWS credentials, or {@code null} to use the instance profile of the controller. Agents
+     *            are only given the credentials of the instance profile if the administrator allowed it, see
+     *            {@link RemoteSessionCredentialsProvider}.
+     * @return a serializable provider bound to the region and credentials id.
+     */
+    @NonNull
+    public RemoteSessionCredentialsProvider remoteSessionCredentialsProvider(
+            @CheckForNull String region, @CheckForNull String credentialsId) {
+        return new RemoteSessionCredentialsProvider(Util.fixEmpty(region), Util.fixEmpty(credentialsId));
+    }
+
+    /**
+     * @return the generation of the configuration and credentials, which changes whenever one of them changes.
+     */
+    long getGeneration() {
+        return generation.get();
+    }
+
+    /**
+     * Asynchronous variant of {@link #sessionCredentials(String, String)}, the session credentials are resolved on a
+     * dedicated bounded thread pool. Cancelling the returned future discards the request if it has not started yet,
+     * a running request is not interrupted as its call to the AWS token service may be shared with other callers.
+     *
+     * @return a future completed with the AWS session credential, or failed with the error that prevented to get it.
+     */
+    @NonNull
+    public CompletableFuture<AwsSessionCredentials> sessionCredentialsAsync(String region, String credentialsId) {
+        CompletableFuture<AwsSessionCredentials> result = new CompletableFuture<>();
+        try {
+            Future<?> task = asyncExecutor.submit(() -> {
+                if (result.isDone()) {
+                    return;
+                }
+                try {
+                    result.complete(sessionCredentials(region, credentialsId));
+                } catch (IOException | RuntimeException e) {
+                    result.completeExceptionally(e);
+                }
+            });
+            result.whenComplete((credentials, error) -> task.cancel(false));
+        } catch (RejectedExecutionException e) {
+            result.completeExceptionally(e);
+        }
+        return result;
+    }
+
+    /**
+     * Same as {@link #sessionCredentialsAsync(String, String)}, failing with a {@link TimeoutException} if the session
+     * credentials are not resolved within the given timeout.
+     */
+    @NonNull
+    public CompletableFuture<AwsSessionCredentials> sessionCredentialsAsync(
+            String region, String credentialsId, @NonNull Duration timeout) {
+        return sessionCredentialsAsync(region, credentialsId).orTimeout(timeout.toMillis(), TimeUnit.MILLISECONDS);
+    }
+
+    private static ThreadPoolExecutor createAsyncExecutor() {
+        ThreadPoolExecutor executor = new ThreadPoolExecutor(
+                ASYNC_THREADS,
+                ASYNC_THREADS,
+                60,
+                TimeUnit.SECONDS,
+                new LinkedBlockingQueue<>(ASYNC_QUEUE_SIZE),
+                new NamingThreadFactory(
+                        new DaemonThreadFactory(), CredentialsAwsGlobalConfiguration.class.getSimpleName()));
+        executor.allowCoreThreadTimeOut(true);
+        return executor;
+    }
+
+    /**
+     * @return the cached session credentials accessed within {@code idleTimeout} that are evicted within
+     *         {@code window}.
+     */
+    @NonNull
+    List<SessionCredentialsCache.Key> sessionCredentialsToRefresh(
+            @NonNull Duration window, @NonNull Duration idleTimeout) {
+        return sessionCredentialsCache.refreshCandidates(window, idleTimeout);
+    }
+
+    /**
+     * Requests new session credentials to the AWS token service to replace the cached ones.
+     */
+    void refreshSessionCredentials(@NonNull SessionCredentialsCache.Key key) throws IOException {
+        CredentialsResolutionEvent event = new CredentialsResolutionEvent(key.region(), key.credentialsId());
+        event.outcome = CredentialsResolutionEvent.CacheOutcome.REFRESH;
+        Throwable failure = null;
+        try {
+            int durationSeconds = refreshDurationSeconds(key);
+            sessionCredentialsCache.refresh(key, () -> sessionCredentialsFromKeyAndSecret(key, durationSeconds, event));
+        } catch (IOException | RuntimeException e) {
+            failure = e;
+            throw e;
+        } finally {
+            metrics.recordResolution(event.outcome(failure), System.nanoTime() - event.startNanos);
+            event.finish(failure);
+        }
+    }
+
+    /**
+     * @return the statistics of the resolution of session credentials.
+     */
+    @NonNull
+    @Restricted(NoExternalUse.class)
+    public CredentialsResolutionMetrics getMetrics() {
+        return metrics;
+    }
+
+    /**
+     * Puts the session credentials stored on disk by a previous run back in the cache, once. The file is removed if
+     * storing session credentials has been disabled since.
+     */
+    private void restoreSessionCredentials() {
+        if (sessionCredentialsRestored) {
+            return;
+        }
+        synchronized (sessionCredentialsStore) {
+            if (!sessionCredentialsRestored) {
+                if (SessionCredentialsStore.ENABLED) {
+                    sessionCredentialsStore.restore();
+                } else {
+                    sessionCredentialsStore.delete();
+                }
+                sessionCredentialsRestored = true;
+            }
+        }
+    }
+
+    /**
+     * Writes the cached session credentials to disk shortly, if enabled and once they were restored.
+     */
+    private void storeSessionCredentials() {
+        if (SessionCredentialsStore.ENABLED && sessionCredentialsRestored) {
+            sessionCredentialsStore.scheduleSave();
+        }
+    }
+
+    /**
+     * @return the access key session credentials are requested with for a Jenkins credential, or null if it does not
+     *         exist or is not an access key, then its session credentials are not stored.
+     */
+    @CheckForNull
+    private String sessionCredentialsSource(@NonNull String credentialsId) {
+        AmazonWebServicesCredentials credentials = getCredentials(credentialsId);
+        if (!(credentials instanceof AWSCredentialsImpl)) {
+            return null;
+        }
+        AWSCredentialsImpl keyAndSecret = (AWSCredentialsImpl) credentials;
+        return keyAndSecret.getAccessKey() + ':' + Util.fixNull(keyAndSecret.getIamRoleArn());
+    }
+
+    /**
+     * Discards everything derived from the configuration.
+     */
+    private void onConfigurationChanged() {
+        generation.incrementAndGet();
+        sessionCredentialsCache.invalidateAll();
+        clientFactory.retireClients();
+        s3UrlSigners.clear();
+        credentialsValidator.invalidateAll();
+        stsCallGuard.reset();
+        resetInstanceProfileCredentialsProvider();
+        storeSessionCredentials();
+    }
+
+    /**
+     * Discards the credentials index and the cached session credentials, the Jenkins credentials may have changed.
+     * The {@link AwsConfigurationListener}s are notified if the configured credentials differ from the ones in the
+     * index. Nothing can depend on credentials that were not looked up since the index was last discarded, so no
+     * event is fired then.
+     */
+    void onCredentialsChanged() {
+        CredentialsIndex.Snapshot before = credentialsIndex.current();
+        generation.incrementAndGet();
+        credentialsIndex.invalidate();
+        sessionCredentialsCache.invalidateAll();
+        s3UrlSigners.clear();
+        credentialsValidator.invalidateAll();
+        storeSessionCredentials();
+        // nothing can depend on a configuration that was not read yet
+        String credentialsId = loaded ? this.credentialsId : null;
+        if (credentialsId != null && before != null) {
+            String region = this.region;
+            AmazonWebServicesCredentials previous = before.credentials().get(credentialsId);
+            AwsConfigurationListener.fire(() -> {
+                if (previous == getCredentials(credentialsId)) {
+                    return null;
+                }
+                return new AwsConfigurationEvent(
+                        AwsConfigurationEvent.Type.CREDENTIALS, region, region, credentialsId, credentialsId);
+            });
+        }
+    }
+
+    /**
+     * Stops the asynchronous requests and releases the AWS clients, their connections and the instance profile
+     * credentials provider when Jenkins stops. The cached session credentials are written to disk, if enabled.
+     */
+    @Restricted(NoExternalUse.class)
+    @Terminator
+    public static void shutdown() {
+        for (CredentialsAwsGlobalConfiguration configuration :
+                ExtensionList.lookup(CredentialsAwsGlobalConfiguration.class)) {
+            configuration.asyncExecutor.shutdownNow();
+            if (SessionCredentialsStore.ENABLED && configuration.sessionCredentialsRestored) {
+                configuration.sessionCredentialsStore.saveQuietly();
+            }
+            configuration.stsClients.close();
+            configuration.clientFactory.close();
+            configuration.resetInstanceProfileCredentialsProvider();
+        }
+    }
+
+    /**
+     * @deprecated use {@link #sessionCredentialsProvider(String, String)} and
+     *             {@link SessionCredentialsProvider#toV1()}
      */
     @Deprecated
     public AWSSessionCredentials sessionCredentials(
@@ -248,6 +890,40 @@ public final class CredentialsAwsGlobalConfiguration extends AbstractAwsGlobalCo
         return SESSION_DURATION;
     }
 
+    /**
+     * @return the duration of the session credentials replacing the cached ones, as long as those were requested for,
+     *         which may be longer than the default for callers requiring a minimum validity.
+     */
+    private int refreshDurationSeconds(@NonNull SessionCredentialsCache.Key key) {
+        Duration duration = Duration.ofSeconds(key.sessionDuration());
+        Duration lifetime = sessionCredentialsCache.lifetime(key);
+        if (lifetime != null && lifetime.compareTo(duration) > 0) {
+            // the expiration has no milliseconds, and the token service call took some time
+            duration = Duration.ofMinutes(lifetime.plusSeconds(59).toMinutes());
+        }
+        return sessionDurationSeconds(Duration.ZERO, duration);
+    }
+
+    /**
+     * @return the duration of new session credentials, long enough to be served to callers requiring
+     *         {@code minValidity} and within the limits of the AWS token service.
+     */
+    private int sessionDurationSeconds(@NonNull Duration minValidity, @CheckForNull Duration requestedDuration) {
+        Duration duration = requestedDuration != null ? requestedDuration : Duration.ofSeconds(getSessionDuration());
+        if (!minValidity.isZero()) {
+            Duration lifetime = SessionCredentialsCache.lifetimeFor(minValidity);
+            if (lifetime.compareTo(duration) > 0) {
+                duration = lifetime;
+            }
+        }
+        if (duration.compareTo(MIN_SESSION_DURATION) < 0) {
+            duration = MIN_SESSION_DURATION;
+        } else if (duration.compareTo(MAX_SESSION_DURATION) > 0) {
+            duration = MAX_SESSION_DURATION;
+        }
+        return (int) duration.getSeconds();
+    }
+
     @NonNull
     @Override
     public String getDisplayName() {
@@ -260,35 +936,145 @@ public final class CredentialsAwsGlobalConfiguration extends AbstractAwsGlobalCo
     }
 
     public ListBoxModel doFillRegionItems() {
-        ListBoxModel regions = new ListBoxModel();
-        regions.add("Auto", "");
-        for (Region s : Region.regions()) {
-            RegionMetadata regionMetadata = RegionMetadata.of(s);
-            regions.add(regionMetadata != null ? regionMetadata.description() : s.id(), s.id());
-        }
-        return regions;
+        return RegionCatalog.get().toListBoxModel();
     }
 
+    /**
+     * Lists the first credentials by name, along with the selected one. The other credentials are found with
+     * {@link #doSearchCredentials(String, int)}, so the page stays small whatever the number of credentials.
+     */
     @RequirePOST
-    public ListBoxModel doFillCredentialsIdItems() {
+    public ListBoxModel doFillCredentialsIdItems(@QueryParameter String credentialsId) {
         Jenkins.get().checkPermission(Jenkins.ADMINISTER);
         ListBoxModel credentials = new ListBoxModel();
         credentials.add("IAM instance Profile/user AWS configuration", "");
-        credentials.addAll(CredentialsProvider.listCredentials(
-                AmazonWebServicesCredentials.class,
-                Jenkins.get(),
-                ACL.SYSTEM,
-                Collections.emptyList(),
-                CredentialsMatchers.instanceOf(AmazonWebServicesCredentials.class)));
+        String selected = Util.fixEmpty(credentialsId);
+        boolean selectedListed = selected == null;
+        for (CredentialsIndex.Item item : credentialsIndex.search(null, 0, CREDENTIALS_PAGE_SIZE).items()) {
+            credentials.add(item.name(), item.id());
+            selectedListed |= item.id().equals(selected);
+        }
+        if (!selectedListed) {
+            AmazonWebServicesCredentials c = getCredentials(selected);
+            credentials.add(c != null ? CredentialsNameProvider.name(c) : selected, selected);
+        }
         return credentials;
     }
 
+    /**
+     * Searches the credentials whose id, name or description contains the query, for the filter of the credentials
+     * list.
+     *
+     * @return the matching credentials after the first {@code offset} ones, at most one page of them, and the total
+     *         number of matches.
+     */
+    @RequirePOST
+    public HttpResponse doSearchCredentials(@QueryParameter String q, @QueryParameter int offset) {
+        Jenkins.get().checkPermission(Jenkins.ADMINISTER);
+        CredentialsIndex.Page page = credentialsIndex.search(q, Math.max(offset, 0), CREDENTIALS_PAGE_SIZE);
+        JSONArray items = new JSONArray();
+        for (CredentialsIndex.Item item : page.items()) {
+            items.add(new JSONObject().element("id", item.id()).element("name", item.name()));
+        }
+        return HttpResponses.okJSON(new JSONObject()
+                .element("items", items)
+                .element("offset", Math.max(offset, 0))
+                .element("total", page.total()));
+    }
+
+    /**
+     * Checks that AWS accepts the selected credentials in the selected region. The result is reused for a while, so
+     * validating the form again does not call the AWS token service each time. Unknown regions are reported without
+     * calling AWS.
+     */
+    @RequirePOST
+    public FormValidation doCheckCredentialsId(@QueryParameter String credentialsId, @QueryParameter String region) {
+        Jenkins.get().checkPermission(Jenkins.ADMINISTER);
+        if (StringUtils.isBlank(credentialsId)) {
+            return FormValidation.ok();
+        }
+        FormValidation regionValidation = doCheckRegion(region);
+        if (regionValidation.kind == FormValidation.Kind.ERROR) {
+            return regionValidation;
+        }
+        return credentialsValidator.validate(credentialsId, Util.fixEmpty(region));
+    }
+
     public FormValidation doCheckRegion(@QueryParameter String region) {
         if (StringUtils.isNotBlank(region)) {
-            if (Region.regions().stream().noneMatch(r -> r.id().equals(region))) {
+            if (!RegionCatalog.get().contains(region)) {
                 return FormValidation.error("Region is not valid");
             }
         }
         return FormValidation.ok();
     }
+
+    /**
+     * Evicts the credentials index and the cached session credentials when the Jenkins credentials are modified.
+     */
+    @Restricted(NoExternalUse.class)
+    @Extension
+    public static final class CredentialsSaveableListener extends SaveableListener {
+        @Override
+        public void onChange(Saveable o, XmlFile file) {
+            if (o instanceof SystemCredentialsProvider) {
+                for (CredentialsAwsGlobalConfiguration configuration :
+                        ExtensionList.lookup(CredentialsAwsGlobalConfiguration.class)) {
+                    configuration.onCredentialsChanged();
+                }
+            }
+        }
+    }
+
+    private record Values(@CheckForNull String region, @CheckForNull String credentialsId) {}
+
+    /**
+     * The credentials provider of the instance profile, along with the number of resolutions in progress with it, so
+     * it is not closed under them.
+     */
+    private static final class InstanceProfileProvider {
+        private final DefaultCredentialsProvider provider;
+        private int users;
+        private boolean retired;
+
+        InstanceProfileProvider(DefaultCredentialsProvider provider) {
+            this.provider = provider;
+        }
+
+        /**
+         * @return false if the provider was discarded, it must not be used anymore.
+         */
+        synchronized boolean acquire() {
+            if (retired) {
+                return false;
+            }
+            users++;
+            return true;
+        }
+
+        void release() {
+            boolean close;
+            synchronized (this) {
+                users--;
+                close = retired && users == 0;
+            }
+            if (close) {
+                provider.close();
+            }
+        }
+
+        /**
+         * Closes the provider once it is not used anymore.
+         */
+        void retire() {
+            boolean close;
+            synchronized (this) {
+                retired = true;
+                close = users == 0;
+            }
+            if (close) {
+                provider.close();
+            }
+        }
+    }
 }
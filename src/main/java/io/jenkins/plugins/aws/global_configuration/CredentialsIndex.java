@@ -0,0 +1,169 @@
+package io.jenkins.plugins.aws.global_configuration;
+
+import com.cloudbees.jenkins.plugins.awscredentials.AmazonWebServicesCredentials;
+import com.cloudbees.plugins.credentials.CredentialsNameProvider;
+import com.cloudbees.plugins.credentials.CredentialsProvider;
+import edu.umd.cs.findbugs.annotations.CheckForNull;
+import edu.umd.cs.findbugs.annotations.NonNull;
+import hudson.security.ACL;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import jenkins.model.Jenkins;
+
+/**
+ * Index by id of the {@link AmazonWebServicesCredentials} available at the Jenkins level. It is built on first use and
+ * discarded when the credentials change, so looking up a credential does not list every credential of the controller.
+ * It also keeps the ids and names of the credentials sorted by name, to search them page by page.
+ * Credentials that are not found cause the index to be rebuilt, at most once every few seconds, as they may have been
+ * added where Jenkins does not notify the changes, e.g. in a folder or by reloading the configuration as code.
+ */
+final class CredentialsIndex {
+
+    /**
+     * Seconds after which the index is rebuilt, to pick up changes of credentials providers that are not saved by
+     * Jenkins.
+     */
+    @SuppressWarnings("FieldMayBeFinal")
+    private static long MAX_AGE = Long.getLong(CredentialsIndex.class.getName() + ".maxAge", 60);
+
+    /**
+     * Seconds after which the index is rebuilt when credentials are not found in it.
+     */
+    @SuppressWarnings("FieldMayBeFinal")
+    private static long MISS_MAX_AGE = Long.getLong(CredentialsIndex.class.getName() + ".missMaxAge", 5);
+
+    @CheckForNull
+    private volatile Snapshot snapshot;
+
+    private long generation;
+
+    /**
+     * Held while the index is built, so concurrent lookups wait for a single rebuild.
+     */
+    private final Object rebuildLock = new Object();
+
+    @CheckForNull
+    AmazonWebServicesCredentials get(@NonNull String credentialsId) {
+        Snapshot current = snapshot();
+        AmazonWebServicesCredentials credentials = current.credentials().get(credentialsId);
+        if (credentials == null && current.isOlderThan(System.nanoTime(), MISS_MAX_AGE)) {
+            credentials = rebuild(MISS_MAX_AGE).credentials().get(credentialsId);
+        }
+        return credentials;
+    }
+
+    /**
+     * Searches the credentials whose id, name or description contains the query, ignoring case.
+     *
+     * @param query
+     *            the text to search, or {@code null} to list every credential.
+     * @return at most {@code limit} matches after the first {@code offset} ones, sorted by name.
+     */
+    @NonNull
+    Page search(@CheckForNull String query, int offset, int limit) {
+        List<Item> items = snapshot().items();
+        String text = query == null ? "" : query.trim().toLowerCase(Locale.ROOT);
+        List<Item> matches = new ArrayList<>(Math.min(limit, items.size()));
+        int total = 0;
+        for (Item item : items) {
+            if (text.isEmpty() || item.matches(text)) {
+                if (total >= offset && matches.size() < limit) {
+                    matches.add(item);
+                }
+                total++;
+            }
+        }
+        return new Page(matches, total);
+    }
+
+    /**
+     * @return the index as currently built, without building it.
+     */
+    @CheckForNull
+    Snapshot current() {
+        return snapshot;
+    }
+
+    /**
+     * Discards the index, it is rebuilt on next lookup.
+     */
+    synchronized void invalidate() {
+        generation++;
+        snapshot = null;
+    }
+
+    @NonNull
+    Snapshot snapshot() {
+        Snapshot current = snapshot;
+        if (current != null && !current.isOlderThan(System.nanoTime(), MAX_AGE)) {
+            return current;
+        }
+        return rebuild(MAX_AGE);
+    }
+
+    /**
+     * Builds the index again, unless it was built within {@code maxAge} seconds, e.g. by a concurrent lookup.
+     */
+    private Snapshot rebuild(long maxAge) {
+        synchronized (rebuildLock) {
+            return build(maxAge);
+        }
+    }
+
+    private Snapshot build(long maxAge) {
+        long expectedGeneration;
+        synchronized (this) {
+            Snapshot current = snapshot;
+            if (current != null && !current.isOlderThan(System.nanoTime(), maxAge)) {
+                return current;
+            }
+            expectedGeneration = generation;
+        }
+        Map<String, AmazonWebServicesCredentials> credentials = new LinkedHashMap<>();
+        for (AmazonWebServicesCredentials c : CredentialsProvider.lookupCredentials(
+                AmazonWebServicesCredentials.class, Jenkins.get(), ACL.SYSTEM, Collections.emptyList())) {
+            credentials.putIfAbsent(c.getId(), c);
+        }
+        List<Item> items = new ArrayList<>(credentials.size());
+        credentials.forEach((id, c) -> items.add(new Item(id, CredentialsNameProvider.name(c), c.getDescription())));
+        items.sort(Comparator.comparing(Item::name, String.CASE_INSENSITIVE_ORDER).thenComparing(Item::id));
+        Snapshot rebuilt = new Snapshot(
+                Collections.unmodifiableMap(credentials), Collections.unmodifiableList(items), System.nanoTime());
+        synchronized (this) {
+            // the credentials changed while the index was built, keep it for this lookup only
+            if (generation == expectedGeneration) {
+                snapshot = rebuilt;
+            }
+        }
+        return rebuilt;
+    }
+
+    record Snapshot(
+            @NonNull Map<String, AmazonWebServicesCredentials> credentials, @NonNull List<Item> items, long builtAt) {
+        boolean isOlderThan(long now, long seconds) {
+            return now - builtAt > TimeUnit.SECONDS.toNanos(seconds);
+        }
+    }
+
+    /**
+     * The id, display name and description of a credential.
+     */
+    record Item(@NonNull String id, @NonNull String name, @CheckForNull String description) {
+        boolean matches(String lowerCaseText) {
+            return id.toLowerCase(Locale.ROOT).contains(lowerCaseText)
+                    || name.toLowerCase(Locale.ROOT).contains(lowerCaseText)
+                    || (description != null && description.toLowerCase(Locale.ROOT).contains(lowerCaseText));
+        }
+    }
+
+    /**
+     * A page of search results, along with the total number of matches.
+     */
+    record Page(@NonNull List<Item> items, int total) {}
+}
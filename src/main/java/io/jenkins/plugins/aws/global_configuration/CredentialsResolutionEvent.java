@@ -0,0 +1,107 @@
+package io.jenkins.plugins.aws.global_configuration;
+
+import edu.umd.cs.findbugs.annotations.CheckForNull;
+import edu.umd.cs.findbugs.annotations.SuppressFBWarnings;
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Enabled;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+
+/**
+ * JDK Flight Recorder event of a resolution of session credentials by {@link CredentialsAwsGlobalConfiguration}, so the
+ * time spent on it can be told apart from other network I/O in a recording. The event is disabled by default and
+ * costs next to nothing then. Enable it in the settings of the recording, e.g. with
+ * {@code <event name="io.jenkins.plugins.aws.CredentialsResolution"><setting name="enabled">true</setting></event>}
+ * in a {@code .jfc} file. Only the ids of the credentials are recorded, never the keys or session tokens.
+ */
+@Name(CredentialsResolutionEvent.NAME)
+@Label("AWS Credentials Resolution")
+@Category({"Jenkins", "AWS"})
+@Description("Resolution of AWS session credentials by the AWS global configuration")
+@Enabled(false)
+@StackTrace(false)
+@SuppressFBWarnings(value = "URF_UNREAD_FIELD", justification = "The fields are read by JDK Flight Recorder")
+final class CredentialsResolutionEvent extends Event {
+
+    static final String NAME = "io.jenkins.plugins.aws.CredentialsResolution";
+
+    enum CacheOutcome {
+        /** Served from the cache, possibly loaded by a concurrent caller. */
+        HIT,
+        /** Loaded from the AWS token service. */
+        MISS,
+        /** Loading failed, the previous session credentials were served. */
+        STALE,
+        /** Loaded again in the background before the cached ones expire. */
+        REFRESH,
+        /** Not cached, e.g. the session credentials of the instance profile. */
+        NONE
+    }
+
+    @Label("Path")
+    @Description("How the session credentials were obtained")
+    String path;
+
+    @Label("Region")
+    String region;
+
+    @Label("Credentials Id")
+    String credentialsId;
+
+    @Label("Cache Outcome")
+    String cacheOutcome;
+
+    @Label("STS Retries")
+    @Description("Calls to the AWS token service retried after a transient failure")
+    int stsRetries;
+
+    @Label("Failure")
+    @Description("Type of the exception if the resolution failed")
+    String failure;
+
+    // state of the resolution, not recorded
+
+    transient CredentialsResolutionMetrics.Path resolvedPath;
+
+    transient CacheOutcome outcome = CacheOutcome.NONE;
+
+    transient int stsAttempts;
+
+    final transient long startNanos = System.nanoTime();
+
+    CredentialsResolutionEvent(@CheckForNull String region, @CheckForNull String credentialsId) {
+        this.region = region;
+        this.credentialsId = credentialsId;
+        begin();
+    }
+
+    /**
+     * Records the event if it is enabled, with the state of the resolution.
+     *
+     * @param e
+     *            the exception that made the resolution fail, or null if it succeeded.
+     */
+    void finish(@CheckForNull Throwable e) {
+        if (!shouldCommit()) {
+            return;
+        }
+        path = resolvedPath != null ? resolvedPath.name() : null;
+        cacheOutcome = outcome(e).name();
+        stsRetries = Math.max(stsAttempts - 1, 0);
+        failure = e != null ? e.getClass().getName() : null;
+        commit();
+    }
+
+    /**
+     * @param e
+     *            the exception that made the resolution fail, or null if it succeeded.
+     * @return how the cache served the resolution.
+     */
+    CacheOutcome outcome(@CheckForNull Throwable e) {
+        // a failed load is only served stale if the resolution succeeded
+        return outcome == CacheOutcome.STALE && e != null ? CacheOutcome.MISS : outcome;
+    }
+}
@@ -0,0 +1,117 @@
+package io.jenkins.plugins.aws.global_configuration;
+
+import com.codahale.metrics.Gauge;
+import com.codahale.metrics.Metric;
+import com.codahale.metrics.MetricRegistry;
+import com.codahale.metrics.MetricSet;
+import com.codahale.metrics.Timer;
+import edu.umd.cs.findbugs.annotations.NonNull;
+import hudson.Extension;
+import java.util.EnumMap;
+import java.util.HashMap;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Function;
+import jenkins.metrics.api.MetricProvider;
+import org.kohsuke.accmod.Restricted;
+import org.kohsuke.accmod.restrictions.NoExternalUse;
+
+/**
+ * Exposes the {@link CredentialsResolutionMetrics} through the Metrics plugin, when it is installed. Besides the
+ * gauges of the statistics, timers keep the distribution of the latency of each path, and of whole resolutions by
+ * cache outcome, cache hits included.
+ */
+@Restricted(NoExternalUse.class)
+@Extension(optional = true)
+public class CredentialsResolutionMetricProvider extends MetricProvider {
+
+    private static final String PREFIX = "aws.credentials";
+
+    private final Map<CredentialsResolutionMetrics.Path, Timer> pathTimers =
+            new EnumMap<>(CredentialsResolutionMetrics.Path.class);
+
+    private final Map<CredentialsResolutionEvent.CacheOutcome, Timer> resolutionTimers =
+            new EnumMap<>(CredentialsResolutionEvent.CacheOutcome.class);
+
+    private boolean listening;
+
+    public CredentialsResolutionMetricProvider() {
+        for (CredentialsResolutionMetrics.Path path : CredentialsResolutionMetrics.Path.values()) {
+            pathTimers.put(path, new Timer());
+        }
+        for (CredentialsResolutionEvent.CacheOutcome outcome : CredentialsResolutionEvent.CacheOutcome.values()) {
+            resolutionTimers.put(outcome, new Timer());
+        }
+    }
+
+    @NonNull
+    @Override
+    public MetricSet getMetricSet() {
+        listen();
+        return () -> {
+            Map<String, Metric> metrics = new HashMap<>();
+            for (CredentialsResolutionEvent.CacheOutcome outcome : CredentialsResolutionEvent.CacheOutcome.values()) {
+                metrics.put(
+                        MetricRegistry.name(PREFIX, "resolution", outcome.name().toLowerCase(Locale.ENGLISH)),
+                        resolutionTimers.get(outcome));
+            }
+            metrics.put(MetricRegistry.name(PREFIX, "cache", "hits"), gauge(it -> it.getCacheHits()));
+            metrics.put(MetricRegistry.name(PREFIX, "cache", "misses"), gauge(it -> it.getCacheMisses()));
+            metrics.put(MetricRegistry.name(PREFIX, "cache", "evictions"), gauge(it -> it.getCacheEvictions()));
+            metrics.put(MetricRegistry.name(PREFIX, "cache", "size"), gauge(it -> it.getCacheSize()));
+            metrics.put(MetricRegistry.name(PREFIX, "cache", "stale"), gauge(it -> it.getCacheStaleHits()));
+            metrics.put(MetricRegistry.name(PREFIX, "sts", "retries"), gauge(it -> it.getStsRetries()));
+            metrics.put(MetricRegistry.name(PREFIX, "sts", "rejections"), gauge(it -> it.getStsRejections()));
+            metrics.put(MetricRegistry.name(PREFIX, "sts", "open"), gauge(it -> it.getStsOpenCircuits()));
+            for (CredentialsResolutionMetrics.Path path : CredentialsResolutionMetrics.Path.values()) {
+                String name = MetricRegistry.name(PREFIX, path.name().toLowerCase(Locale.ENGLISH));
+                metrics.put(
+                        MetricRegistry.name(name, "calls"),
+                        gauge(it -> it.getPaths().get(path).getCalls()));
+                metrics.put(
+                        MetricRegistry.name(name, "failures"),
+                        gauge(it -> it.getPaths().get(path).getFailureCount()));
+                metrics.put(
+                        MetricRegistry.name(name, "latency", "mean"),
+                        gauge(it -> it.getPaths().get(path).getLatency().getMeanMillis()));
+                metrics.put(
+                        MetricRegistry.name(name, "latency", "p50"),
+                        gauge(it -> it.getPaths().get(path).getLatency().getP50Millis()));
+                metrics.put(
+                        MetricRegistry.name(name, "latency", "p95"),
+                        gauge(it -> it.getPaths().get(path).getLatency().getP95Millis()));
+                metrics.put(
+                        MetricRegistry.name(name, "latency", "p99"),
+                        gauge(it -> it.getPaths().get(path).getLatency().getP99Millis()));
+                metrics.put(MetricRegistry.name(name, "duration"), pathTimers.get(path));
+            }
+            return metrics;
+        };
+    }
+
+    /**
+     * Feeds the timers with the durations recorded from now on, once.
+     */
+    private synchronized void listen() {
+        if (listening) {
+            return;
+        }
+        CredentialsAwsGlobalConfiguration.get().getMetrics().addListener(new CredentialsResolutionMetrics.Listener() {
+            @Override
+            public void onPath(@NonNull CredentialsResolutionMetrics.Path path, long durationNanos) {
+                pathTimers.get(path).update(durationNanos, TimeUnit.NANOSECONDS);
+            }
+
+            @Override
+            public void onResolution(@NonNull CredentialsResolutionEvent.CacheOutcome outcome, long durationNanos) {
+                resolutionTimers.get(outcome).update(durationNanos, TimeUnit.NANOSECONDS);
+            }
+        });
+        listening = true;
+    }
+
+    private static Gauge<Number> gauge(Function<CredentialsResolutionMetrics, Number> value) {
+        return () -> value.apply(CredentialsAwsGlobalConfiguration.get().getMetrics());
+    }
+}
@@ -0,0 +1,258 @@
+package io.jenkins.plugins.aws.global_configuration;
+
+import edu.umd.cs.findbugs.annotations.NonNull;
+import java.util.Collections;
+import java.util.EnumMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+import org.kohsuke.accmod.Restricted;
+import org.kohsuke.accmod.restrictions.NoExternalUse;
+
+/**
+ * Statistics of the resolution of AWS session credentials by {@link CredentialsAwsGlobalConfiguration}.
+ */
+@Restricted(NoExternalUse.class)
+public final class CredentialsResolutionMetrics {
+
+    /**
+     * The ways to obtain session credentials.
+     */
+    public enum Path {
+        KEY_AND_SECRET("Key and secret through STS"),
+        SESSION("Session credentials"),
+        INSTANCE_PROFILE("Instance profile or user AWS configuration");
+
+        private final String displayName;
+
+        Path(String displayName) {
+            this.displayName = displayName;
+        }
+
+        public String getDisplayName() {
+            return displayName;
+        }
+    }
+
+    private final Map<Path, PathMetrics> paths = new EnumMap<>(Path.class);
+
+    private final List<Listener> listeners = new CopyOnWriteArrayList<>();
+
+    private final SessionCredentialsCache cache;
+
+    private final StsCallGuard stsCallGuard;
+
+    CredentialsResolutionMetrics(@NonNull SessionCredentialsCache cache, @NonNull StsCallGuard stsCallGuard) {
+        this.cache = cache;
+        this.stsCallGuard = stsCallGuard;
+        for (Path path : Path.values()) {
+            paths.put(path, new PathMetrics());
+        }
+    }
+
+    void record(@NonNull Path path, long durationNanos) {
+        paths.get(path).record(durationNanos);
+        listeners.forEach(it -> it.onPath(path, durationNanos));
+    }
+
+    void recordFailure(@NonNull Path path, long durationNanos, @NonNull String exceptionType) {
+        paths.get(path).recordFailure(durationNanos, exceptionType);
+        listeners.forEach(it -> it.onPath(path, durationNanos));
+    }
+
+    /**
+     * Records the whole resolution of session credentials, including the ones served from the cache.
+     */
+    void recordResolution(@NonNull CredentialsResolutionEvent.CacheOutcome outcome, long durationNanos) {
+        listeners.forEach(it -> it.onResolution(outcome, durationNanos));
+    }
+
+    void addListener(@NonNull Listener listener) {
+        listeners.add(listener);
+    }
+
+    @NonNull
+    public Map<Path, PathMetrics> getPaths() {
+        return Collections.unmodifiableMap(paths);
+    }
+
+    public long getCacheHits() {
+        return cache.getHits();
+    }
+
+    public long getCacheMisses() {
+        return cache.getMisses();
+    }
+
+    public long getCacheEvictions() {
+        return cache.getEvictions();
+    }
+
+    public int getCacheSize() {
+        return cache.size();
+    }
+
+    /**
+     * @return the number of times expiring session credentials were served because new ones could not be obtained.
+     */
+    public long getCacheStaleHits() {
+        return cache.getStaleHits();
+    }
+
+    public long getStsRetries() {
+        return stsCallGuard.getRetries();
+    }
+
+    /**
+     * @return the number of calls to the AWS token service rejected because the circuit of their region was open.
+     */
+    public long getStsRejections() {
+        return stsCallGuard.getRejections();
+    }
+
+    public long getStsOpenCircuits() {
+        return stsCallGuard.getOpenCircuits();
+    }
+
+    /**
+     * @return the circuit breaker of each region of the AWS token service called so far.
+     */
+    @NonNull
+    public List<StsCallGuard.RegionState> getStsRegions() {
+        return stsCallGuard.getRegions();
+    }
+
+    /**
+     * Receives every recorded duration, e.g. to keep their distribution in the timers of the Metrics plugin.
+     */
+    interface Listener {
+        void onPath(@NonNull Path path, long durationNanos);
+
+        void onResolution(@NonNull CredentialsResolutionEvent.CacheOutcome outcome, long durationNanos);
+    }
+
+    /**
+     * Statistics of one way to obtain session credentials.
+     */
+    public static final class PathMetrics {
+        private final LongAdder calls = new LongAdder();
+        private final ConcurrentMap<String, LongAdder> failures = new ConcurrentHashMap<>();
+        private final LatencyHistogram latency = new LatencyHistogram();
+
+        void record(long durationNanos) {
+            calls.increment();
+            latency.record(durationNanos);
+        }
+
+        void recordFailure(long durationNanos, String exceptionType) {
+            record(durationNanos);
+            failures.computeIfAbsent(exceptionType, it -> new LongAdder()).increment();
+        }
+
+        public long getCalls() {
+            return calls.sum();
+        }
+
+        public long getFailureCount() {
+            return failures.values().stream().mapToLong(LongAdder::sum).sum();
+        }
+
+        /**
+         * @return the number of failures by exception type.
+         */
+        @NonNull
+        public Map<String, Long> getFailures() {
+            Map<String, Long> result = new TreeMap<>();
+            failures.forEach((type, count) -> result.put(type, count.sum()));
+            return result;
+        }
+
+        @NonNull
+        public LatencyHistogram getLatency() {
+            return latency;
+        }
+    }
+
+    /**
+     * Latency histogram with fixed buckets, percentiles are approximated to the upper bound of their bucket and capped
+     * to the last bucket.
+     */
+    public static final class LatencyHistogram {
+        private static final long[] BOUNDS_MILLIS = {1, 2, 5, 10, 25, 50, 100, 250, 500, 1000, 2500, 5000, 10000};
+
+        private final AtomicLongArray buckets = new AtomicLongArray(BOUNDS_MILLIS.length + 1);
+        private final LongAdder count = new LongAdder();
+        private final LongAdder totalNanos = new LongAdder();
+
+        void record(long durationNanos) {
+            long millis = TimeUnit.NANOSECONDS.toMillis(durationNanos);
+            int bucket = 0;
+            while (bucket < BOUNDS_MILLIS.length && millis >= BOUNDS_MILLIS[bucket]) {
+                bucket++;
+            }
+            buckets.incrementAndGet(bucket);
+            count.increment();
+            totalNanos.add(durationNanos);
+        }
+
+        public long getCount() {
+            return count.sum();
+        }
+
+        /**
+         * @return the mean latency in milliseconds, rounded to one decimal.
+         */
+        public double getMeanMillis() {
+            long n = count.sum();
+            if (n == 0) {
+                return 0;
+            }
+            double mean = totalNanos.sum() / (double) n / TimeUnit.MILLISECONDS.toNanos(1);
+            return Math.round(mean * 10) / 10.0;
+        }
+
+        /**
+         * @param quantile
+         *            between 0 and 1.
+         * @return the upper bound in milliseconds of the bucket of the quantile, or 0 if nothing was recorded.
+         */
+        public long getPercentileMillis(double quantile) {
+            long total = 0;
+            long[] counts = new long[buckets.length()];
+            for (int i = 0; i < counts.length; i++) {
+                counts[i] = buckets.get(i);
+                total += counts[i];
+            }
+            if (total == 0) {
+                return 0;
+            }
+            long rank = (long) Math.ceil(quantile * total);
+            long seen = 0;
+            for (int i = 0; i < BOUNDS_MILLIS.length; i++) {
+                seen += counts[i];
+                if (seen >= rank) {
+                    return BOUNDS_MILLIS[i];
+                }
+            }
+            return BOUNDS_MILLIS[BOUNDS_MILLIS.length - 1];
+        }
+
+        public long getP50Millis() {
+            return getPercentileMillis(0.5);
+        }
+
+        public long getP95Millis() {
+            return getPercentileMillis(0.95);
+        }
+
+        public long getP99Millis() {
+            return getPercentileMillis(0.99);
+        }
+    }
+}
@@ -0,0 +1,104 @@
+package io.jenkins.plugins.aws.global_configuration;
+
+import com.cloudbees.jenkins.plugins.awscredentials.AmazonWebServicesCredentials;
+import edu.umd.cs.findbugs.annotations.CheckForNull;
+import edu.umd.cs.findbugs.annotations.NonNull;
+import hudson.util.FormValidation;
+import java.time.Clock;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.function.Function;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+import software.amazon.awssdk.auth.credentials.AwsCredentials;
+import software.amazon.awssdk.core.exception.SdkException;
+import software.amazon.awssdk.services.sts.model.GetCallerIdentityRequest;
+import software.amazon.awssdk.services.sts.model.GetCallerIdentityResponse;
+
+/**
+ * Checks that Jenkins credentials are accepted by AWS, by calling GetCallerIdentity with them. The call has a short
+ * timeout so the form validation does not hang, and its result is kept for a while per credentials and region, so
+ * validating the form again does not call the token service each time.
+ */
+final class CredentialsValidator {
+
+    private static final Logger LOGGER = Logger.getLogger(CredentialsValidator.class.getName());
+
+    /**
+     * Seconds after which the validation of credentials times out, including the connection to the token service.
+     */
+    @SuppressWarnings("FieldMayBeFinal")
+    private static int TIMEOUT = Integer.getInteger(CredentialsValidator.class.getName() + ".timeout", 5);
+
+    /**
+     * Seconds during which the result of the validation of credentials is reused.
+     */
+    @SuppressWarnings("FieldMayBeFinal")
+    private static int CACHE_TTL = Integer.getInteger(CredentialsValidator.class.getName() + ".cacheTtl", 60);
+
+    private final StsClients stsClients;
+
+    private final Function<String, AmazonWebServicesCredentials> credentialsLookup;
+
+    private final Clock clock;
+
+    private final ConcurrentMap<Key, Result> results = new ConcurrentHashMap<>();
+
+    CredentialsValidator(
+            @NonNull StsClients stsClients,
+            @NonNull Function<String, AmazonWebServicesCredentials> credentialsLookup,
+            @NonNull Clock clock) {
+        this.stsClients = stsClients;
+        this.credentialsLookup = credentialsLookup;
+        this.clock = clock;
+    }
+
+    /**
+     * @return whether AWS accepts the credentials, reusing the result of a recent validation.
+     */
+    @NonNull
+    FormValidation validate(@NonNull String credentialsId, @CheckForNull String region) {
+        Key key = new Key(credentialsId, region);
+        Instant now = clock.instant();
+        Result result = results.get(key);
+        if (result != null && now.isBefore(result.validUntil())) {
+            return result.validation();
+        }
+        AmazonWebServicesCredentials credentials = credentialsLookup.apply(credentialsId);
+        if (credentials == null) {
+            return FormValidation.error("The credentials " + credentialsId + " cannot be found");
+        }
+        FormValidation validation = callerIdentity(credentials, region);
+        results.put(key, new Result(validation, clock.instant().plusSeconds(CACHE_TTL)));
+        return validation;
+    }
+
+    private FormValidation callerIdentity(AmazonWebServicesCredentials credentials, @CheckForNull String region) {
+        Duration timeout = Duration.ofSeconds(TIMEOUT);
+        try {
+            AwsCredentials awsCredentials = credentials.resolveCredentials();
+            GetCallerIdentityResponse identity = stsClients
+                    .get(region, awsCredentials)
+                    .getCallerIdentity(GetCallerIdentityRequest.builder()
+                            .overrideConfiguration(it -> it.apiCallTimeout(timeout).apiCallAttemptTimeout(timeout))
+                            .build());
+            return FormValidation.ok("Authenticated as " + identity.arn());
+        } catch (SdkException e) {
+            LOGGER.log(Level.FINE, "Validation of the credentials " + credentials.getId() + " failed", e);
+            return FormValidation.error("AWS does not accept these credentials: " + e.getMessage());
+        }
+    }
+
+    /**
+     * Forgets the results of the previous validations, e.g. when the credentials change.
+     */
+    void invalidateAll() {
+        results.clear();
+    }
+
+    private record Key(@NonNull String credentialsId, @CheckForNull String region) {}
+
+    private record Result(@NonNull FormValidation validation, @NonNull Instant validUntil) {}
+}
@@ -0,0 +1,106 @@
+package io.jenkins.plugins.aws.global_configuration;
+
+import edu.umd.cs.findbugs.annotations.CheckForNull;
+import edu.umd.cs.findbugs.annotations.NonNull;
+import hudson.util.ListBoxModel;
+import jakarta.servlet.ServletException;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import net.sf.json.JSONArray;
+import net.sf.json.JSONObject;
+import org.kohsuke.stapler.StaplerRequest2;
+import org.kohsuke.stapler.StaplerResponse2;
+import software.amazon.awssdk.regions.Region;
+import software.amazon.awssdk.regions.RegionMetadata;
+
+/**
+ * The regions known by the AWS SDK. The list only changes with the SDK version, so it is computed once, along with the
+ * set used to validate a region and the JSON rendering of the list box.
+ */
+final class RegionCatalog {
+
+    private static final RegionCatalog INSTANCE = new RegionCatalog(Region.regions());
+
+    private final Set<String> ids;
+
+    private final List<ListBoxModel.Option> options;
+
+    private final byte[] json;
+
+    RegionCatalog(@NonNull List<Region> regions) {
+        Set<String> ids = new HashSet<>();
+        List<ListBoxModel.Option> options = new ArrayList<>();
+        options.add(new ListBoxModel.Option("Auto", ""));
+        for (Region s : regions) {
+            RegionMetadata regionMetadata = RegionMetadata.of(s);
+            String name = regionMetadata != null ? regionMetadata.description() : s.id();
+            options.add(new ListBoxModel.Option(name, s.id()));
+            ids.add(s.id());
+        }
+        this.ids = Collections.unmodifiableSet(ids);
+        this.options = Collections.unmodifiableList(options);
+
+        JSONArray values = new JSONArray();
+        for (ListBoxModel.Option option : options) {
+            values.add(new JSONObject()
+                    .element("name", option.name)
+                    .element("selected", false)
+                    .element("value", option.value));
+        }
+        this.json = new JSONObject()
+                .element("_class", ListBoxModel.class.getName())
+                .element("values", values)
+                .toString()
+                .getBytes(StandardCharsets.UTF_8);
+    }
+
+    @NonNull
+    static RegionCatalog get() {
+        return INSTANCE;
+    }
+
+    boolean contains(@CheckForNull String region) {
+        return region != null && ids.contains(region);
+    }
+
+    /**
+     * @return the options of the region list box, with "Auto" first. The model renders the JSON computed once.
+     */
+    @NonNull
+    ListBoxModel toListBoxModel() {
+        return new RegionListBoxModel(this);
+    }
+
+    private static final class RegionListBoxModel extends ListBoxModel {
+
+        private static final long serialVersionUID = 1L;
+
+        private final transient RegionCatalog catalog;
+
+        RegionListBoxModel(RegionCatalog catalog) {
+            super(catalog.options.size());
+            for (ListBoxModel.Option option : catalog.options) {
+                add(option.name, option.value);
+            }
+            this.catalog = catalog;
+        }
+
+        @Override
+        public void generateResponse(StaplerRequest2 req, StaplerResponse2 rsp, Object node)
+                throws IOException, ServletException {
+            if (catalog == null || size() != catalog.options.size()) {
+                // modified after creation, render it the usual way
+                super.generateResponse(req, rsp, node);
+                return;
+            }
+            rsp.setContentType("application/json;charset=UTF-8");
+            rsp.setContentLength(catalog.json.length);
+            rsp.getOutputStream().write(catalog.json);
+        }
+    }
+}
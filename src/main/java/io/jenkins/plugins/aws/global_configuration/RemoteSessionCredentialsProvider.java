@@ -0,0 +1,217 @@
+package io.jenkins.plugins.aws.global_configuration;
+
+import edu.umd.cs.findbugs.annotations.CheckForNull;
+import edu.umd.cs.findbugs.annotations.NonNull;
+import hudson.remoting.Channel;
+import java.io.IOException;
+import java.io.Serializable;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.Objects;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import jenkins.model.Jenkins;
+import org.kohsuke.accmod.Restricted;
+import org.kohsuke.accmod.restrictions.NoExternalUse;
+import software.amazon.awssdk.auth.credentials.AwsCredentials;
+import software.amazon.awssdk.auth.credentials.AwsCredentialsProvider;
+import software.amazon.awssdk.auth.credentials.AwsSessionCredentials;
+import software.amazon.awssdk.core.exception.SdkClientException;
+
+/**
+ * Provider of the session credentials resolved by the controller, for agents. When the provider is sent over a
+ * remoting channel, it carries a reference to the controller instead of credentials: the agent gets session
+ * credentials in one round-trip to the controller, which serves them from its cache, and keeps them until shortly
+ * before they expire. Agents never call the AWS token service or the instance metadata service themselves.
+ * <p>
+ * The provider is bound to a region and a credentials id on the controller, an agent cannot use it to obtain other
+ * credentials. Agents are refused the credentials of the instance profile of the controller, i.e. without credentials
+ * id, unless the {@code allowDefaultCredentials} system property is set. The session credentials kept on an agent are
+ * dropped once the configuration or the credentials change on the controller, as soon as a provider sent after the
+ * change is used.
+ *
+ * @see CredentialsAwsGlobalConfiguration#remoteSessionCredentialsProvider(String, String)
+ */
+public final class RemoteSessionCredentialsProvider implements AwsCredentialsProvider, Serializable {
+
+    private static final long serialVersionUID = 1L;
+
+    /**
+     * How long session credentials are kept on agents when the controller does not know their expiration.
+     */
+    @SuppressWarnings("FieldMayBeFinal")
+    private static long DEFAULT_VALIDITY_SECONDS =
+            Long.getLong(RemoteSessionCredentialsProvider.class.getName() + ".defaultValiditySeconds", 300);
+
+    /**
+     * How long before their expiration session credentials are requested again, at most a quarter of their validity.
+     */
+    @SuppressWarnings("FieldMayBeFinal")
+    private static long EXPIRATION_MARGIN_SECONDS =
+            Long.getLong(RemoteSessionCredentialsProvider.class.getName() + ".expirationMarginSeconds", 300);
+
+    /**
+     * Whether agents may use the credentials of the instance profile of the controller.
+     */
+    @SuppressWarnings("FieldMayBeFinal")
+    private static boolean ALLOW_DEFAULT_CREDENTIALS =
+            Boolean.getBoolean(RemoteSessionCredentialsProvider.class.getName() + ".allowDefaultCredentials");
+
+    /**
+     * Session credentials kept on the agent, shared by the providers for the same region and credentials.
+     */
+    private static final ConcurrentMap<String, Entry> CACHE = new ConcurrentHashMap<>();
+
+    @CheckForNull
+    private final String region;
+
+    @CheckForNull
+    private final String credentialsId;
+
+    /**
+     * Generation of the controller configuration when the provider was sent to the agent, session credentials kept
+     * from an older generation are requested again.
+     */
+    private final long generation;
+
+    @NonNull
+    private final Source source;
+
+    RemoteSessionCredentialsProvider(@CheckForNull String region, @CheckForNull String credentialsId) {
+        this(region, credentialsId, 0, new ControllerSource(region, credentialsId, false));
+    }
+
+    private RemoteSessionCredentialsProvider(
+            @CheckForNull String region, @CheckForNull String credentialsId, long generation, @NonNull Source source) {
+        this.region = region;
+        this.credentialsId = credentialsId;
+        this.generation = generation;
+        this.source = source;
+    }
+
+    @Override
+    public AwsCredentials resolveCredentials() {
+        try {
+            if (source instanceof ControllerSource) {
+                // on the controller, which has its own cache
+                return source.get().toCredentials();
+            }
+            String key = region + "/" + credentialsId;
+            Entry entry = CACHE.get(key);
+            if (entry == null || !entry.isValid(Instant.now(), generation)) {
+                synchronized (this) {
+                    entry = CACHE.get(key);
+                    if (entry == null || !entry.isValid(Instant.now(), generation)) {
+                        entry = new Entry(source.get(), Instant.now());
+                        CACHE.put(key, entry);
+                    }
+                }
+            }
+            return entry.credentials;
+        } catch (IOException e) {
+            throw SdkClientException.create("Unable to get AWS session credentials from the controller", e);
+        }
+    }
+
+    /**
+     * Sent over a remoting channel, the controller side source is exported so the agent calls it back.
+     */
+    private Object writeReplace() {
+        Channel channel = Channel.current();
+        if (channel == null || !(source instanceof ControllerSource)) {
+            return this;
+        }
+        long generation = CredentialsAwsGlobalConfiguration.get().getGeneration();
+        Source remote = channel.export(Source.class, new ControllerSource(region, credentialsId, true));
+        return new RemoteSessionCredentialsProvider(region, credentialsId, generation, remote);
+    }
+
+    @Override
+    public String toString() {
+        return getClass().getSimpleName() + "[region=" + region + ", credentialsId=" + credentialsId + "]";
+    }
+
+    /**
+     * Source of session credentials, called by agents over the remoting channel.
+     */
+    @Restricted(NoExternalUse.class)
+    public interface Source extends Serializable {
+        @NonNull
+        Snapshot get() throws IOException;
+    }
+
+    /**
+     * @param remote
+     *            whether the source is called by an agent.
+     */
+    private record ControllerSource(@CheckForNull String region, @CheckForNull String credentialsId, boolean remote)
+            implements Source {
+        @NonNull
+        @Override
+        public Snapshot get() throws IOException {
+            if (Jenkins.getInstanceOrNull() == null) {
+                throw new IOException("AWS session credentials are only available on the controller");
+            }
+            if (remote && credentialsId == null && !ALLOW_DEFAULT_CREDENTIALS) {
+                throw new IOException("The AWS credentials of the controller are not available to agents, "
+                        + "an AWS credentials id is required");
+            }
+            CredentialsAwsGlobalConfiguration configuration = CredentialsAwsGlobalConfiguration.get();
+            // read before resolving, so a change made meanwhile is not missed
+            long generation = configuration.getGeneration();
+            SessionCredentialsCache.Cached cached = configuration.resolveSessionCredentials(region, credentialsId);
+            AwsSessionCredentials credentials = cached.credentials();
+            Long validitySeconds = cached.expiration() != null
+                    ? Math.max(0, Duration.between(Instant.now(), cached.expiration()).getSeconds())
+                    : null;
+            return new Snapshot(
+                    credentials.accessKeyId(),
+                    credentials.secretAccessKey(),
+                    credentials.sessionToken(),
+                    validitySeconds,
+                    generation);
+        }
+    }
+
+    /**
+     * Session credentials as sent to agents. The validity is relative, so it does not depend on the clocks of the
+     * controller and the agent being in sync.
+     */
+    @Restricted(NoExternalUse.class)
+    public record Snapshot(
+            @NonNull String accessKeyId,
+            @NonNull String secretAccessKey,
+            @NonNull String sessionToken,
+            @CheckForNull Long validitySeconds,
+            long generation)
+            implements Serializable {
+
+        @NonNull
+        AwsSessionCredentials toCredentials() {
+            return AwsSessionCredentials.create(accessKeyId, secretAccessKey, sessionToken);
+        }
+
+        @Override
+        public String toString() {
+            return "Snapshot[accessKeyId=" + accessKeyId + ", validitySeconds=" + validitySeconds + "]";
+        }
+    }
+
+    private static final class Entry {
+        private final AwsSessionCredentials credentials;
+        private final Instant refreshAt;
+        private final long generation;
+
+        Entry(@NonNull Snapshot snapshot, @NonNull Instant now) {
+            this.credentials = snapshot.toCredentials();
+            this.generation = snapshot.generation();
+            long validity = Objects.requireNonNullElse(snapshot.validitySeconds(), DEFAULT_VALIDITY_SECONDS);
+            long margin = Math.min(EXPIRATION_MARGIN_SECONDS, validity / 4);
+            this.refreshAt = now.plusSeconds(validity - margin);
+        }
+
+        boolean isValid(@NonNull Instant now, long minGeneration) {
+            return now.isBefore(refreshAt) && generation >= minGeneration;
+        }
+    }
+}
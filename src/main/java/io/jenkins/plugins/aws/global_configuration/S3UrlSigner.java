@@ -0,0 +1,135 @@
+package io.jenkins.plugins.aws.global_configuration;
+
+import edu.umd.cs.findbugs.annotations.NonNull;
+import java.net.MalformedURLException;
+import java.net.URL;
+import java.time.Duration;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import software.amazon.awssdk.auth.credentials.AwsCredentialsProvider;
+import software.amazon.awssdk.http.SdkHttpMethod;
+import software.amazon.awssdk.http.SdkHttpRequest;
+import software.amazon.awssdk.http.auth.aws.signer.AwsV4FamilyHttpSigner;
+import software.amazon.awssdk.http.auth.aws.signer.AwsV4HttpSigner;
+import software.amazon.awssdk.identity.spi.AwsCredentialsIdentity;
+import software.amazon.awssdk.regions.PartitionMetadata;
+import software.amazon.awssdk.regions.Region;
+import software.amazon.awssdk.utils.http.SdkHttpUtils;
+
+/**
+ * Generates pre-signed S3 URLs with the region and session credentials of {@link CredentialsAwsGlobalConfiguration}.
+ * Signing is a local computation, the session credentials are resolved once per call, so signing the URLs of many
+ * objects at once does not call AWS for each of them.
+ *
+ * @see CredentialsAwsGlobalConfiguration#s3UrlSigner(String, String)
+ */
+public final class S3UrlSigner {
+
+    /**
+     * Longest validity of a pre-signed URL allowed by Signature Version 4.
+     */
+    private static final Duration MAX_EXPIRATION = Duration.ofDays(7);
+
+    private static final AwsV4HttpSigner SIGNER = AwsV4HttpSigner.create();
+
+    @NonNull
+    private final String region;
+
+    /**
+     * DNS suffix of the partition of the region, e.g. {@code amazonaws.com.cn} for the China regions.
+     */
+    @NonNull
+    private final String dnsSuffix;
+
+    @NonNull
+    private final AwsCredentialsProvider credentialsProvider;
+
+    S3UrlSigner(@NonNull String region, @NonNull AwsCredentialsProvider credentialsProvider) {
+        this.region = region;
+        this.dnsSuffix = PartitionMetadata.of(Region.of(region)).dnsSuffix();
+        this.credentialsProvider = credentialsProvider;
+    }
+
+    @NonNull
+    public String getRegion() {
+        return region;
+    }
+
+    /**
+     * @param method
+     *            the HTTP method the URL is for, e.g. {@link SdkHttpMethod#GET} to download the object.
+     * @param expiration
+     *            how long the URL is valid, at most 7 days. The URL stops working earlier if the session credentials
+     *            used to sign it expire.
+     * @return the pre-signed URL of the object.
+     */
+    @NonNull
+    public URL presign(
+            @NonNull SdkHttpMethod method, @NonNull String bucket, @NonNull String key, @NonNull Duration expiration) {
+        return presign(method, bucket, List.of(key), expiration).get(key);
+    }
+
+    /**
+     * Signs the URLs of several objects of a bucket, with the same session credentials.
+     *
+     * @param method
+     *            the HTTP method the URLs are for, e.g. {@link SdkHttpMethod#GET} to download the objects.
+     * @param expiration
+     *            how long the URLs are valid, at most 7 days. The URLs stop working earlier if the session credentials
+     *            used to sign them expire.
+     * @return the pre-signed URL of each key, in the order of the keys.
+     */
+    @NonNull
+    public Map<String, URL> presign(
+            @NonNull SdkHttpMethod method,
+            @NonNull String bucket,
+            @NonNull List<String> keys,
+            @NonNull Duration expiration) {
+        if (expiration.isNegative() || expiration.isZero() || expiration.compareTo(MAX_EXPIRATION) > 0) {
+            throw new IllegalArgumentException("The expiration must be positive and at most " + MAX_EXPIRATION);
+        }
+        AwsCredentialsIdentity credentials = credentialsProvider.resolveCredentials();
+        Map<String, URL> urls = new LinkedHashMap<>();
+        for (String key : keys) {
+            urls.put(key, sign(request(method, bucket, key), credentials, expiration));
+        }
+        return urls;
+    }
+
+    private SdkHttpRequest request(SdkHttpMethod method, String bucket, String key) {
+        SdkHttpRequest.Builder request = SdkHttpRequest.builder().method(method).protocol("https");
+        String path = "/" + SdkHttpUtils.urlEncodeIgnoreSlashes(key);
+        if (isVirtualHostCompatible(bucket)) {
+            request.host(bucket + ".s3." + region + "." + dnsSuffix).encodedPath(path);
+        } else {
+            request.host("s3." + region + "." + dnsSuffix).encodedPath("/" + SdkHttpUtils.urlEncode(bucket) + path);
+        }
+        return request.build();
+    }
+
+    private URL sign(SdkHttpRequest request, AwsCredentialsIdentity credentials, Duration expiration) {
+        SdkHttpRequest signed = SIGNER.sign(it -> it.request(request)
+                        .identity(credentials)
+                        .putProperty(AwsV4HttpSigner.SERVICE_SIGNING_NAME, "s3")
+                        .putProperty(AwsV4HttpSigner.REGION_NAME, region)
+                        .putProperty(AwsV4HttpSigner.DOUBLE_URL_ENCODE, false)
+                        .putProperty(AwsV4HttpSigner.NORMALIZE_PATH, false)
+                        .putProperty(AwsV4HttpSigner.PAYLOAD_SIGNING_ENABLED, false)
+                        .putProperty(AwsV4HttpSigner.AUTH_LOCATION, AwsV4FamilyHttpSigner.AuthLocation.QUERY_STRING)
+                        .putProperty(AwsV4HttpSigner.EXPIRATION_DURATION, expiration))
+                .request();
+        try {
+            return signed.getUri().toURL();
+        } catch (MalformedURLException e) {
+            throw new IllegalArgumentException("Invalid S3 URL " + signed.getUri(), e);
+        }
+    }
+
+    /**
+     * Buckets with dots or upper case characters cannot be addressed as a host name over HTTPS.
+     */
+    private static boolean isVirtualHostCompatible(String bucket) {
+        return bucket.matches("[a-z0-9][a-z0-9-]{1,61}[a-z0-9]");
+    }
+}
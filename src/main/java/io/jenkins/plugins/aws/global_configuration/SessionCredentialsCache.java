@@ -0,0 +1,434 @@
+package io.jenkins.plugins.aws.global_configuration;
+
+import edu.umd.cs.findbugs.annotations.CheckForNull;
+import edu.umd.cs.findbugs.annotations.NonNull;
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.time.Clock;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+import java.util.stream.Collectors;
+import software.amazon.awssdk.auth.credentials.AwsSessionCredentials;
+
+/**
+ * Bounded cache of the session credentials returned by the AWS token service.
+ * Entries stop being served well before the session token expires, so callers always get a token they can use.
+ * Concurrent loads of the same entry are coalesced, the first caller loads it while the others wait for its result.
+ * When loading new session credentials fails, the previous ones are served as long as they have not expired, so an
+ * outage of the token service does not fail the callers.
+ * Callers may require a minimum remaining validity, a cached token that expires too soon for them is not served to
+ * them but stays in the cache for the other callers. Loads are only shared by callers with the same requirement, so
+ * callers waiting for a load take its result as is.
+ * Session credentials loaded while the cache is invalidated are returned to the callers that asked for them, but not
+ * cached, as they may have been obtained with the previous configuration or Jenkins credentials.
+ */
+final class SessionCredentialsCache {
+
+    private static final Logger LOGGER = Logger.getLogger(SessionCredentialsCache.class.getName());
+
+    /**
+     * Maximum number of session credentials kept in the cache.
+     */
+    @SuppressWarnings("FieldMayBeFinal")
+    private static int MAX_ENTRIES = Integer.getInteger(SessionCredentialsCache.class.getName() + ".maxEntries", 256);
+
+    /**
+     * Seconds before the expiration of a session token at which it is evicted from the cache. It is capped to a quarter
+     * of the token lifetime for short sessions.
+     */
+    @SuppressWarnings("FieldMayBeFinal")
+    private static int EXPIRATION_MARGIN =
+            Integer.getInteger(SessionCredentialsCache.class.getName() + ".expirationMargin", 600);
+
+    /**
+     * Seconds before the expiration of a session token after which it is not served anymore, even when loading new
+     * session credentials fails.
+     */
+    @SuppressWarnings("FieldMayBeFinal")
+    private static int STALE_MARGIN = Integer.getInteger(SessionCredentialsCache.class.getName() + ".staleMargin", 60);
+
+    private final ConcurrentMap<Key, Entry> entries = new ConcurrentHashMap<>();
+
+    private final ConcurrentMap<Load, CompletableFuture<Cached>> loading = new ConcurrentHashMap<>();
+
+    /**
+     * Incremented each time entries are invalidated, so loads that started before are not cached.
+     */
+    private final AtomicLong generation = new AtomicLong();
+
+    private final Clock clock;
+
+    private final LongAdder hits = new LongAdder();
+
+    private final LongAdder misses = new LongAdder();
+
+    private final LongAdder evictions = new LongAdder();
+
+    private final LongAdder staleHits = new LongAdder();
+
+    SessionCredentialsCache() {
+        this(Clock.systemUTC());
+    }
+
+    SessionCredentialsCache(@NonNull Clock clock) {
+        this.clock = clock;
+    }
+
+    /**
+     * @return the cached session credentials, or null if there are none or they are about to expire.
+     */
+    @CheckForNull
+    Cached get(@NonNull Key key) {
+        return get(key, Duration.ZERO);
+    }
+
+    /**
+     * @return the cached session credentials, or null if there are none, they are about to expire or they expire
+     *         within {@code minValidity}.
+     */
+    @CheckForNull
+    Cached get(@NonNull Key key, @NonNull Duration minValidity) {
+        Cached cached = lookup(key, minValidity);
+        (cached != null ? hits : misses).increment();
+        return cached;
+    }
+
+    @CheckForNull
+    private Cached lookup(Key key, Duration minValidity) {
+        Entry entry = entries.get(key);
+        if (entry == null) {
+            return null;
+        }
+        Instant now = clock.instant();
+        if (!entry.isFresh(now)) {
+            // kept while usable, in case the next load fails
+            if (!entry.isUsable(now) && entries.remove(key, entry)) {
+                evictions.increment();
+            }
+            return null;
+        }
+        if (!entry.isValidFor(now, minValidity)) {
+            return null;
+        }
+        entry.lastAccess = now;
+        return entry.cached;
+    }
+
+    /**
+     * Returns the cached session credentials, or loads them. Only one load per key runs at a time, concurrent callers
+     * for the same key get the result of that load.
+     *
+     * @return the session credentials, or null if the loader did not return any.
+     */
+    @CheckForNull
+    Cached get(@NonNull Key key, @NonNull Loader loader) throws IOException {
+        return get(key, Duration.ZERO, loader);
+    }
+
+    /**
+     * Returns the cached session credentials if they remain valid for at least {@code minValidity}, or loads them.
+     * The loaded session credentials replace the cached ones, they are returned even if the token service issued them
+     * for less than {@code minValidity}.
+     *
+     * @return the session credentials, or null if the loader did not return any.
+     */
+    @CheckForNull
+    Cached get(@NonNull Key key, @NonNull Duration minValidity, @NonNull Loader loader) throws IOException {
+        Cached cached = get(key, minValidity);
+        if (cached != null) {
+            return cached;
+        }
+        return load(key, loader, false, minValidity);
+    }
+
+    /**
+     * Loads the session credentials again, even if the cached ones are still fresh. It does not count as an access to
+     * the entry.
+     *
+     * @return the session credentials, or null if the loader did not return any.
+     */
+    @CheckForNull
+    Cached refresh(@NonNull Key key, @NonNull Loader loader) throws IOException {
+        return load(key, loader, true, Duration.ZERO);
+    }
+
+    /**
+     * @return the keys of the entries accessed within {@code idleTimeout} that are evicted within {@code window}.
+     */
+    @NonNull
+    List<Key> refreshCandidates(@NonNull Duration window, @NonNull Duration idleTimeout) {
+        Instant now = clock.instant();
+        Instant refreshBefore = now.plus(window);
+        Instant accessedAfter = now.minus(idleTimeout);
+        return entries.entrySet().stream()
+                .filter(it -> it.getValue().evictAt.isBefore(refreshBefore))
+                .filter(it -> it.getValue().lastAccess.isAfter(accessedAfter))
+                .map(Map.Entry::getKey)
+                .collect(Collectors.toList());
+    }
+
+    @CheckForNull
+    private Cached load(Key key, Loader loader, boolean refresh, Duration minValidity) throws IOException {
+        long loadGeneration = generation.get();
+        Load loadKey = new Load(key, minValidity);
+        CompletableFuture<Cached> load = new CompletableFuture<>();
+        CompletableFuture<Cached> pending = loading.putIfAbsent(loadKey, load);
+        if (pending != null) {
+            return await(pending);
+        }
+        Entry previous = entries.get(key);
+        try {
+            // another load may have completed since the first lookup
+            Cached cached = refresh ? null : lookup(key, minValidity);
+            if (cached == null) {
+                cached = loader.load();
+                if (cached != null) {
+                    Instant lastAccess = refresh && previous != null ? previous.lastAccess : clock.instant();
+                    store(key, cached, lastAccess, loadGeneration);
+                }
+            }
+            load.complete(cached);
+            return cached;
+        } catch (IOException | RuntimeException e) {
+            Instant now = clock.instant();
+            if (!refresh
+                    && previous != null
+                    && previous.isUsable(now)
+                    && previous.isValidFor(now, minValidity)
+                    && generation.get() == loadGeneration) {
+                LOGGER.log(
+                        Level.WARNING,
+                        "Failed to obtain new session credentials for " + key + ", serving the previous ones until "
+                                + previous.cached.expiration(),
+                        e);
+                staleHits.increment();
+                load.complete(previous.cached);
+                return previous.cached;
+            }
+            load.completeExceptionally(e);
+            throw e;
+        } finally {
+            loading.remove(loadKey, load);
+        }
+    }
+
+    private static Cached await(CompletableFuture<Cached> pending) throws IOException {
+        try {
+            return pending.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Interrupted while waiting for session credentials");
+        } catch (ExecutionException e) {
+            Throwable cause = e.getCause();
+            if (cause instanceof RuntimeException) {
+                throw (RuntimeException) cause;
+            }
+            throw new IOException(cause);
+        }
+    }
+
+    /**
+     * Stores session credentials, unless they have no expiration or are about to expire.
+     */
+    void put(@NonNull Key key, @NonNull Cached cached) {
+        store(key, cached, clock.instant(), generation.get());
+    }
+
+    private void store(Key key, Cached cached, Instant lastAccess, long loadGeneration) {
+        Instant expiration = cached.expiration();
+        if (expiration == null) {
+            return;
+        }
+        Instant now = clock.instant();
+        Entry entry = new Entry(
+                cached,
+                Duration.between(now, expiration),
+                evictAt(now, expiration),
+                expiration.minusSeconds(STALE_MARGIN),
+                lastAccess);
+        if (!entry.isFresh(now)) {
+            LOGGER.log(Level.FINE, "Not caching session credentials for {0}, they are about to expire", key);
+            return;
+        }
+        if (generation.get() != loadGeneration) {
+            LOGGER.log(Level.FINE, "Not caching session credentials for {0}, the cache was invalidated", key);
+            return;
+        }
+        entries.put(key, entry);
+        if (generation.get() != loadGeneration) {
+            // invalidated meanwhile
+            entries.remove(key, entry);
+            return;
+        }
+        if (entries.size() > MAX_ENTRIES) {
+            evict(now);
+        }
+    }
+
+    /**
+     * @return how long the cached session credentials were valid for when they were cached, to request new ones for
+     *         as long, or null if there are none.
+     */
+    @CheckForNull
+    Duration lifetime(@NonNull Key key) {
+        Entry entry = entries.get(key);
+        return entry != null ? entry.lifetime : null;
+    }
+
+    /**
+     * @return the session credentials that can still be served, fresh or not.
+     */
+    @NonNull
+    Map<Key, Cached> snapshot() {
+        Instant now = clock.instant();
+        Map<Key, Cached> result = new HashMap<>();
+        entries.forEach((key, entry) -> {
+            if (entry.isUsable(now)) {
+                result.put(key, entry.cached);
+            }
+        });
+        return result;
+    }
+
+    /**
+     * Removes every session credential. Loads in progress are not cached, and new callers do not wait for them.
+     */
+    void invalidateAll() {
+        generation.incrementAndGet();
+        loading.clear();
+        entries.clear();
+    }
+
+    int size() {
+        return entries.size();
+    }
+
+    long getHits() {
+        return hits.sum();
+    }
+
+    long getMisses() {
+        return misses.sum();
+    }
+
+    /**
+     * @return the number of times expiring session credentials were served because new ones could not be obtained.
+     */
+    long getStaleHits() {
+        return staleHits.sum();
+    }
+
+    /**
+     * @return the number of entries removed because they were about to expire or the cache was full.
+     */
+    long getEvictions() {
+        return evictions.sum();
+    }
+
+    /**
+     * @return how long session credentials must be requested for, so that the cache can serve them to callers
+     *         requiring {@code minValidity} for a while.
+     */
+    @NonNull
+    static Duration lifetimeFor(@NonNull Duration minValidity) {
+        return minValidity.plusSeconds(EXPIRATION_MARGIN);
+    }
+
+    /**
+     * @return the longest validity session credentials requested for {@code lifetime} can be served for.
+     */
+    @NonNull
+    static Duration maxValidityFor(@NonNull Duration lifetime) {
+        return lifetime.minusSeconds(EXPIRATION_MARGIN);
+    }
+
+    private static boolean isValidFor(Cached cached, Instant now, Duration minValidity) {
+        return cached.expiration() == null || !now.plus(minValidity).isAfter(cached.expiration());
+    }
+
+    private static Instant evictAt(Instant now, Instant expiration) {
+        Duration margin = Duration.ofSeconds(EXPIRATION_MARGIN);
+        Duration quarterLifetime = Duration.between(now, expiration).dividedBy(4);
+        return expiration.minus(margin.compareTo(quarterLifetime) > 0 ? quarterLifetime : margin);
+    }
+
+    private synchronized void evict(Instant now) {
+        for (Map.Entry<Key, Entry> it : entries.entrySet()) {
+            if (!it.getValue().isUsable(now) && entries.remove(it.getKey(), it.getValue())) {
+                evictions.increment();
+            }
+        }
+        while (entries.size() > MAX_ENTRIES) {
+            entries.entrySet().stream()
+                    .min(Comparator.comparing(it -> it.getValue().evictAt))
+                    .filter(it -> entries.remove(it.getKey(), it.getValue()))
+                    .ifPresent(it -> evictions.increment());
+        }
+    }
+
+    /**
+     * Identifies the session credentials requested for a Jenkins credential, by default for {@code sessionDuration}
+     * seconds.
+     */
+    record Key(@CheckForNull String region, @NonNull String credentialsId, int sessionDuration) {}
+
+    /**
+     * A load of session credentials, shared by the callers with the same requirement.
+     */
+    private record Load(@NonNull Key key, @NonNull Duration minValidity) {}
+
+    /**
+     * Session credentials together with the time at which the token service says they expire. The expiration is null
+     * for session credentials that are not issued by the token service, those are not cached.
+     */
+    record Cached(@NonNull AwsSessionCredentials credentials, @CheckForNull Instant expiration) {}
+
+    @FunctionalInterface
+    interface Loader {
+        @CheckForNull
+        Cached load() throws IOException;
+    }
+
+    private static final class Entry {
+        private final Cached cached;
+        private final Duration lifetime;
+        private final Instant evictAt;
+        private final Instant staleUntil;
+        private volatile Instant lastAccess;
+
+        Entry(Cached cached, Duration lifetime, Instant evictAt, Instant staleUntil, Instant lastAccess) {
+            this.cached = cached;
+            this.lifetime = lifetime;
+            this.evictAt = evictAt;
+            this.staleUntil = staleUntil;
+            this.lastAccess = lastAccess;
+        }
+
+        boolean isFresh(Instant now) {
+            return now.isBefore(evictAt);
+        }
+
+        /**
+         * @return true if the session credentials can still be served when new ones cannot be obtained.
+         */
+        boolean isUsable(Instant now) {
+            return now.isBefore(staleUntil);
+        }
+
+        boolean isValidFor(Instant now, Duration minValidity) {
+            return SessionCredentialsCache.isValidFor(cached, now, minValidity);
+        }
+    }
+}
@@ -0,0 +1,79 @@
+package io.jenkins.plugins.aws.global_configuration;
+
+import com.amazonaws.auth.AWSCredentials;
+import com.amazonaws.auth.AWSCredentialsProvider;
+import com.amazonaws.auth.BasicSessionCredentials;
+import edu.umd.cs.findbugs.annotations.CheckForNull;
+import edu.umd.cs.findbugs.annotations.NonNull;
+import java.io.IOException;
+import software.amazon.awssdk.auth.credentials.AwsCredentialsProvider;
+import software.amazon.awssdk.auth.credentials.AwsSessionCredentials;
+import software.amazon.awssdk.core.exception.SdkClientException;
+
+/**
+ * Provider of the session credentials of {@link CredentialsAwsGlobalConfiguration} for a region and a credentials id.
+ * Each resolution returns session credentials that are still valid, served from the cache and renewed before they
+ * expire, so an SDK client built once with this provider can be used for as long as needed, e.g. for long multipart
+ * uploads.
+ *
+ * @see CredentialsAwsGlobalConfiguration#sessionCredentialsProvider(String, String)
+ */
+public final class SessionCredentialsProvider implements AwsCredentialsProvider {
+
+    @NonNull
+    private final CredentialsAwsGlobalConfiguration configuration;
+
+    @CheckForNull
+    private final String region;
+
+    @CheckForNull
+    private final String credentialsId;
+
+    SessionCredentialsProvider(
+            @NonNull CredentialsAwsGlobalConfiguration configuration,
+            @CheckForNull String region,
+            @CheckForNull String credentialsId) {
+        this.configuration = configuration;
+        this.region = region;
+        this.credentialsId = credentialsId;
+    }
+
+    @Override
+    public AwsSessionCredentials resolveCredentials() {
+        try {
+            return configuration.sessionCredentials(region, credentialsId);
+        } catch (IOException e) {
+            throw SdkClientException.create("Unable to get AWS session credentials", e);
+        }
+    }
+
+    /**
+     * @return the same provider, for clients of the AWS SDK for Java 1.x.
+     */
+    @NonNull
+    public AWSCredentialsProvider toV1() {
+        return new AWSCredentialsProvider() {
+            @Override
+            public AWSCredentials getCredentials() {
+                AwsSessionCredentials credentials = resolveCredentials();
+                return new BasicSessionCredentials(
+                        credentials.accessKeyId(), credentials.secretAccessKey(), credentials.sessionToken());
+            }
+
+            @Override
+            public void refresh() {
+                // session credentials are renewed before they expire
+            }
+
+            @Override
+            public String toString() {
+                return SessionCredentialsProvider.this + " for AWS SDK 1.x";
+            }
+        };
+    }
+
+    @Override
+    public String toString() {
+        return getClass().getSimpleName() + "[region=" + region + ", credentialsId=" + credentialsId + "]";
+    }
+}
@@ -0,0 +1,104 @@
+package io.jenkins.plugins.aws.global_configuration;
+
+import hudson.Extension;
+import hudson.ExtensionList;
+import hudson.model.AsyncPeriodicWork;
+import hudson.model.TaskListener;
+import java.io.IOException;
+import java.time.Duration;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.logging.Level;
+import org.apache.commons.lang.StringUtils;
+import org.kohsuke.accmod.Restricted;
+import org.kohsuke.accmod.restrictions.NoExternalUse;
+
+/**
+ * Renews the session credentials used recently before they are evicted from the cache, so builds do not wait for the
+ * AWS token service when a session token expires. The session credentials of the global configuration are requested
+ * once by the first run after Jenkins starts, then they are only renewed while they are used.
+ */
+@Restricted(NoExternalUse.class)
+@Extension
+public class SessionCredentialsRefresher extends AsyncPeriodicWork {
+
+    /**
+     * Seconds between two runs of the refresh.
+     */
+    @SuppressWarnings("FieldMayBeFinal")
+    private static long RECURRENCE_PERIOD =
+            Long.getLong(SessionCredentialsRefresher.class.getName() + ".recurrencePeriod", 60);
+
+    /**
+     * Minutes after their last use during which session credentials keep being refreshed.
+     */
+    @SuppressWarnings("FieldMayBeFinal")
+    private static long IDLE_TIMEOUT = Long.getLong(SessionCredentialsRefresher.class.getName() + ".idleTimeout", 30);
+
+    /**
+     * Whether the session credentials of the global configuration were requested since Jenkins started.
+     */
+    private final AtomicBoolean prewarmed = new AtomicBoolean();
+
+    public SessionCredentialsRefresher() {
+        super("AWS session credentials refresh");
+    }
+
+    @Override
+    public long getRecurrencePeriod() {
+        return TimeUnit.SECONDS.toMillis(RECURRENCE_PERIOD);
+    }
+
+    /**
+     * The first run waits for a whole period, keeping the configuration and the token service off the startup of
+     * Jenkins.
+     */
+    @Override
+    public long getInitialDelay() {
+        return getRecurrencePeriod();
+    }
+
+    @Override
+    protected Level getNormalLoggingLevel() {
+        return Level.FINE;
+    }
+
+    @Override
+    protected void execute(TaskListener listener) {
+        for (CredentialsAwsGlobalConfiguration configuration :
+                ExtensionList.lookup(CredentialsAwsGlobalConfiguration.class)) {
+            // refresh whatever is evicted before the run after the next one
+            Duration window = Duration.ofSeconds(RECURRENCE_PERIOD * 2);
+            for (SessionCredentialsCache.Key key :
+                    configuration.sessionCredentialsToRefresh(window, Duration.ofMinutes(IDLE_TIMEOUT))) {
+                try {
+                    configuration.refreshSessionCredentials(key);
+                } catch (IOException | RuntimeException e) {
+                    listener.error("Failed to refresh the session credentials of " + key.credentialsId() + ": "
+                            + configuration.processExceptionMessage(e));
+                }
+            }
+        }
+        if (prewarmed.compareAndSet(false, true)) {
+            prewarm(listener);
+        }
+    }
+
+    /**
+     * Requests the session credentials of the global configuration, once, whether it succeeds or not.
+     */
+    private static void prewarm(TaskListener listener) {
+        for (CredentialsAwsGlobalConfiguration configuration :
+                ExtensionList.lookup(CredentialsAwsGlobalConfiguration.class)) {
+            String credentialsId = configuration.getCredentialsId();
+            if (StringUtils.isNotBlank(credentialsId)) {
+                try {
+                    configuration.sessionCredentials(configuration.getRegion(), credentialsId);
+                } catch (IOException | RuntimeException e) {
+                    listener.error("Failed to get the session credentials of " + credentialsId + ": "
+                            + configuration.processExceptionMessage(e));
+                }
+            }
+        }
+    }
+}
@@ -0,0 +1,190 @@
+package io.jenkins.plugins.aws.global_configuration;
+
+import edu.umd.cs.findbugs.annotations.CheckForNull;
+import edu.umd.cs.findbugs.annotations.NonNull;
+import hudson.Util;
+import hudson.util.AtomicFileWriter;
+import hudson.util.Secret;
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.time.Instant;
+import java.time.format.DateTimeParseException;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.function.Function;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+import jenkins.model.Jenkins;
+import jenkins.util.Timer;
+import net.sf.json.JSONArray;
+import net.sf.json.JSONException;
+import net.sf.json.JSONObject;
+import software.amazon.awssdk.auth.credentials.AwsSessionCredentials;
+
+/**
+ * Keeps the session credentials of a {@link SessionCredentialsCache} under JENKINS_HOME, encrypted with a
+ * {@link Secret}, so the tokens still valid survive a restart of Jenkins instead of being requested again by every
+ * queued build at once. The file is written atomically, shortly after the cache changes. Each entry records a
+ * fingerprint of the access key the session credentials were requested with, entries whose Jenkins credential was
+ * removed or now holds another key are dropped on restore.
+ */
+final class SessionCredentialsStore {
+
+    private static final Logger LOGGER = Logger.getLogger(SessionCredentialsStore.class.getName());
+
+    /**
+     * Whether session credentials are kept on disk across restarts.
+     */
+    @SuppressWarnings("FieldMayBeFinal")
+    static boolean ENABLED = Boolean.getBoolean(SessionCredentialsStore.class.getName() + ".enabled");
+
+    /**
+     * Seconds between a change of the cache and the write of the file, changes within that delay are written at once.
+     */
+    @SuppressWarnings("FieldMayBeFinal")
+    private static int SAVE_DELAY = Integer.getInteger(SessionCredentialsStore.class.getName() + ".saveDelay", 5);
+
+    private final SessionCredentialsCache cache;
+
+    /**
+     * Identifies the access key of a Jenkins credential, or null if it does not exist or has none.
+     */
+    private final Function<String, String> sources;
+
+    private final AtomicBoolean saveScheduled = new AtomicBoolean();
+
+    SessionCredentialsStore(@NonNull SessionCredentialsCache cache, @NonNull Function<String, String> sources) {
+        this.cache = cache;
+        this.sources = sources;
+    }
+
+    @NonNull
+    File getFile() {
+        return new File(Jenkins.get().getRootDir(), SessionCredentialsStore.class.getName() + ".secret");
+    }
+
+    /**
+     * Puts the stored session credentials that have not expired, and whose Jenkins credential still holds the same
+     * access key, back in the cache.
+     */
+    void restore() {
+        File file = getFile();
+        if (!file.exists()) {
+            return;
+        }
+        try {
+            Secret secret = Secret.decrypt(Files.readString(file.toPath(), StandardCharsets.UTF_8));
+            if (secret == null) {
+                LOGGER.log(Level.WARNING, "Cannot decrypt the stored AWS session credentials, ignoring them");
+                return;
+            }
+            int restored = 0;
+            for (Object it : JSONArray.fromObject(secret.getPlainText())) {
+                JSONObject json = (JSONObject) it;
+                SessionCredentialsCache.Key key = new SessionCredentialsCache.Key(
+                        json.optString("region", null),
+                        json.getString("credentialsId"),
+                        json.getInt("sessionDuration"));
+                String fingerprint = fingerprint(key.credentialsId());
+                if (fingerprint == null || !fingerprint.equals(json.optString("source", null))) {
+                    continue;
+                }
+                cache.put(
+                        key,
+                        new SessionCredentialsCache.Cached(
+                                AwsSessionCredentials.create(
+                                        json.getString("accessKeyId"),
+                                        json.getString("secretAccessKey"),
+                                        json.getString("sessionToken")),
+                                Instant.parse(json.getString("expiration"))));
+                restored++;
+            }
+            LOGGER.log(Level.FINE, "Restored {0} AWS session credentials", restored);
+        } catch (IOException | JSONException | ClassCastException | DateTimeParseException e) {
+            LOGGER.log(Level.WARNING, "Cannot read the stored AWS session credentials from " + file, e);
+        }
+    }
+
+    /**
+     * Writes the cache to disk shortly, unless a write is already scheduled.
+     */
+    void scheduleSave() {
+        if (saveScheduled.compareAndSet(false, true)) {
+            Timer.get().schedule(this::saveQuietly, SAVE_DELAY, TimeUnit.SECONDS);
+        }
+    }
+
+    void saveQuietly() {
+        try {
+            save();
+        } catch (IOException e) {
+            LOGGER.log(Level.WARNING, "Cannot store the AWS session credentials", e);
+        }
+    }
+
+    /**
+     * Writes the cache to disk now.
+     */
+    synchronized void save() throws IOException {
+        saveScheduled.set(false);
+        Map<SessionCredentialsCache.Key, SessionCredentialsCache.Cached> entries = cache.snapshot();
+        File file = getFile();
+        if (entries.isEmpty()) {
+            Files.deleteIfExists(file.toPath());
+            return;
+        }
+        JSONArray json = new JSONArray();
+        for (Map.Entry<SessionCredentialsCache.Key, SessionCredentialsCache.Cached> entry : entries.entrySet()) {
+            SessionCredentialsCache.Key key = entry.getKey();
+            SessionCredentialsCache.Cached cached = entry.getValue();
+            String fingerprint = fingerprint(key.credentialsId());
+            if (fingerprint == null) {
+                continue;
+            }
+            AwsSessionCredentials credentials = cached.credentials();
+            json.add(new JSONObject()
+                    .element("region", key.region())
+                    .element("credentialsId", key.credentialsId())
+                    .element("sessionDuration", key.sessionDuration())
+                    .element("source", fingerprint)
+                    .element("accessKeyId", credentials.accessKeyId())
+                    .element("secretAccessKey", credentials.secretAccessKey())
+                    .element("sessionToken", credentials.sessionToken())
+                    .element("expiration", String.valueOf(cached.expiration())));
+        }
+        if (json.isEmpty()) {
+            Files.deleteIfExists(file.toPath());
+            return;
+        }
+        AtomicFileWriter writer = new AtomicFileWriter(file.toPath(), StandardCharsets.UTF_8);
+        try {
+            writer.write(Secret.fromString(json.toString()).getEncryptedValue());
+            writer.commit();
+        } finally {
+            writer.abort();
+        }
+    }
+
+    /**
+     * @return a digest of the access key of the Jenkins credential, the file does not reveal it.
+     */
+    @CheckForNull
+    private String fingerprint(@NonNull String credentialsId) throws IOException {
+        String source = sources.apply(credentialsId);
+        return source != null ? Util.getHexOfSHA256DigestOf(source) : null;
+    }
+
+    /**
+     * Removes the file, e.g. when the store is disabled.
+     */
+    void delete() {
+        try {
+            Files.deleteIfExists(getFile().toPath());
+        } catch (IOException e) {
+            LOGGER.log(Level.WARNING, "Cannot delete the stored AWS session credentials", e);
+        }
+    }
+}
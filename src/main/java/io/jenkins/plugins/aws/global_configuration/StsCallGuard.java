@@ -0,0 +1,301 @@
+package io.jenkins.plugins.aws.global_configuration;
+
+import edu.umd.cs.findbugs.annotations.CheckForNull;
+import edu.umd.cs.findbugs.annotations.NonNull;
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.time.Clock;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+import org.kohsuke.accmod.Restricted;
+import org.kohsuke.accmod.restrictions.NoExternalUse;
+import software.amazon.awssdk.awscore.exception.AwsServiceException;
+import software.amazon.awssdk.core.exception.SdkClientException;
+import software.amazon.awssdk.core.exception.SdkException;
+
+/**
+ * Retries and circuit breaker around the calls to the AWS token service, one per region endpoint.
+ * <p>
+ * Throttling, server errors and timeouts are retried with a jittered exponential backoff. The backoff is shared by
+ * every caller of a region: after a failure, no caller calls that region again before the backoff elapsed, and the
+ * backoff grows with consecutive failures and shrinks with successes, so callers slow down together instead of retrying
+ * each on their own. After too many consecutive failures the circuit of the region opens and calls fail fast for a
+ * while, then a single call probes the region before the circuit closes again.
+ */
+@Restricted(NoExternalUse.class)
+public final class StsCallGuard {
+
+    private static final Logger LOGGER = Logger.getLogger(StsCallGuard.class.getName());
+
+    /**
+     * Maximum number of attempts of a call to the AWS token service.
+     */
+    @SuppressWarnings("FieldMayBeFinal")
+    private static int MAX_ATTEMPTS = Integer.getInteger(StsCallGuard.class.getName() + ".maxAttempts", 3);
+
+    /**
+     * Milliseconds of the backoff after a first failure, doubled on each consecutive failure.
+     */
+    @SuppressWarnings("FieldMayBeFinal")
+    private static long BASE_DELAY = Long.getLong(StsCallGuard.class.getName() + ".baseDelay", 200);
+
+    /**
+     * Maximum milliseconds of the backoff.
+     */
+    @SuppressWarnings("FieldMayBeFinal")
+    private static long MAX_DELAY = Long.getLong(StsCallGuard.class.getName() + ".maxDelay", 10000);
+
+    /**
+     * Number of consecutive failures after which the circuit of a region opens.
+     */
+    @SuppressWarnings("FieldMayBeFinal")
+    private static int FAILURE_THRESHOLD = Integer.getInteger(StsCallGuard.class.getName() + ".failureThreshold", 5);
+
+    /**
+     * Seconds during which an open circuit rejects calls before letting one through.
+     */
+    @SuppressWarnings("FieldMayBeFinal")
+    private static int OPEN_SECONDS = Integer.getInteger(StsCallGuard.class.getName() + ".openSeconds", 30);
+
+    private static final int MAX_BACKOFF_LEVEL = 16;
+
+    private final ConcurrentMap<String, RegionState> regions = new ConcurrentHashMap<>();
+
+    private final Clock clock;
+
+    private final Sleeper sleeper;
+
+    StsCallGuard() {
+        this(Clock.systemUTC(), Thread::sleep);
+    }
+
+    StsCallGuard(@NonNull Clock clock, @NonNull Sleeper sleeper) {
+        this.clock = clock;
+        this.sleeper = sleeper;
+    }
+
+    /**
+     * Calls the AWS token service of the given region, retrying failures that may be transient.
+     *
+     * @throws CircuitOpenException
+     *             if the circuit of the region is open.
+     */
+    <T> T call(@CheckForNull String region, @NonNull Call<T> call) throws IOException {
+        RegionState state = regions.computeIfAbsent(region != null ? region : "", RegionState::new);
+        for (int attempt = 1; ; attempt++) {
+            state.acquire(clock.instant());
+            try {
+                long delay = state.delayMillis(clock.instant());
+                if (delay > 0) {
+                    sleeper.sleep(delay);
+                }
+                T result = call.call();
+                state.onSuccess();
+                return result;
+            } catch (InterruptedException e) {
+                state.release();
+                Thread.currentThread().interrupt();
+                throw new InterruptedIOException("Interrupted while backing off from the AWS token service");
+            } catch (SdkException e) {
+                if (!isRetryable(e)) {
+                    // the token service answered, the request itself is wrong
+                    state.onSuccess();
+                    throw e;
+                }
+                boolean open = state.onFailure(clock.instant(), isThrottling(e));
+                if (open || attempt >= MAX_ATTEMPTS) {
+                    throw e;
+                }
+                state.retries.increment();
+                LOGGER.log(Level.FINE, "Retrying the call to the AWS token service of " + state.getRegion(), e);
+            } catch (RuntimeException e) {
+                state.release();
+                throw e;
+            }
+        }
+    }
+
+    static boolean isRetryable(@NonNull SdkException e) {
+        if (e instanceof SdkClientException) {
+            // connection failures and timeouts
+            return true;
+        }
+        return e instanceof AwsServiceException ase && (ase.isThrottlingException() || ase.statusCode() >= 500);
+    }
+
+    private static boolean isThrottling(@NonNull SdkException e) {
+        return e instanceof AwsServiceException ase && ase.isThrottlingException();
+    }
+
+    /**
+     * Forgets the state of every region, e.g. when the endpoint or the credentials change.
+     */
+    void reset() {
+        regions.clear();
+    }
+
+    /**
+     * @return the state of each region called so far, sorted by region.
+     */
+    @NonNull
+    public List<RegionState> getRegions() {
+        List<RegionState> result = new ArrayList<>(regions.values());
+        result.sort(Comparator.comparing(RegionState::getRegion));
+        return result;
+    }
+
+    public long getRetries() {
+        return regions.values().stream().mapToLong(RegionState::getRetries).sum();
+    }
+
+    public long getRejections() {
+        return regions.values().stream().mapToLong(RegionState::getRejections).sum();
+    }
+
+    public long getOpenCircuits() {
+        return regions.values().stream()
+                .filter(it -> it.getState() != CircuitState.CLOSED)
+                .count();
+    }
+
+    public enum CircuitState {
+        CLOSED,
+        OPEN,
+        HALF_OPEN
+    }
+
+    /**
+     * Circuit breaker and backoff of one region.
+     */
+    public static final class RegionState {
+        private final String region;
+        private final LongAdder retries = new LongAdder();
+        private final LongAdder rejections = new LongAdder();
+        private final LongAdder throttles = new LongAdder();
+        private CircuitState state = CircuitState.CLOSED;
+        private int consecutiveFailures;
+        private int backoffLevel;
+        private Instant openedAt;
+        private Instant notBefore = Instant.EPOCH;
+        private boolean probing;
+
+        RegionState(String region) {
+            this.region = region;
+        }
+
+        synchronized void acquire(Instant now) throws CircuitOpenException {
+            if (state == CircuitState.OPEN && !now.isBefore(openedAt.plusSeconds(OPEN_SECONDS))) {
+                state = CircuitState.HALF_OPEN;
+            }
+            if (state == CircuitState.OPEN || state == CircuitState.HALF_OPEN && probing) {
+                rejections.increment();
+                throw new CircuitOpenException(getRegion());
+            }
+            if (state == CircuitState.HALF_OPEN) {
+                probing = true;
+            }
+        }
+
+        synchronized void release() {
+            probing = false;
+        }
+
+        synchronized long delayMillis(Instant now) {
+            return notBefore.isAfter(now) ? Duration.between(now, notBefore).toMillis() : 0;
+        }
+
+        synchronized void onSuccess() {
+            if (state != CircuitState.CLOSED) {
+                LOGGER.log(Level.INFO, "The AWS token service of {0} is available again", getRegion());
+            }
+            state = CircuitState.CLOSED;
+            probing = false;
+            consecutiveFailures = 0;
+            backoffLevel = Math.max(0, backoffLevel - 1);
+        }
+
+        /**
+         * @return true if the circuit is open.
+         */
+        synchronized boolean onFailure(Instant now, boolean throttling) {
+            if (throttling) {
+                throttles.increment();
+            }
+            probing = false;
+            consecutiveFailures++;
+            backoffLevel = Math.min(MAX_BACKOFF_LEVEL, backoffLevel + 1);
+            long ceiling = Math.min(MAX_DELAY, BASE_DELAY << (backoffLevel - 1));
+            Instant until = now.plusMillis(ThreadLocalRandom.current().nextLong(ceiling + 1));
+            if (until.isAfter(notBefore)) {
+                notBefore = until;
+            }
+            if (state == CircuitState.HALF_OPEN || consecutiveFailures >= FAILURE_THRESHOLD) {
+                if (state != CircuitState.OPEN) {
+                    LOGGER.log(
+                            Level.WARNING,
+                            "Too many failures calling the AWS token service of {0}, not calling it for {1}s",
+                            new Object[] {getRegion(), OPEN_SECONDS});
+                }
+                state = CircuitState.OPEN;
+                openedAt = now;
+            }
+            return state == CircuitState.OPEN;
+        }
+
+        @NonNull
+        public String getRegion() {
+            return region.isEmpty() ? "default" : region;
+        }
+
+        @NonNull
+        public synchronized CircuitState getState() {
+            return state;
+        }
+
+        public synchronized int getConsecutiveFailures() {
+            return consecutiveFailures;
+        }
+
+        public long getRetries() {
+            return retries.sum();
+        }
+
+        public long getRejections() {
+            return rejections.sum();
+        }
+
+        public long getThrottles() {
+            return throttles.sum();
+        }
+    }
+
+    /**
+     * Thrown when a call is rejected because the circuit of its region is open.
+     */
+    public static final class CircuitOpenException extends IOException {
+        private static final long serialVersionUID = 1L;
+
+        CircuitOpenException(String region) {
+            super("The AWS token service of " + region + " is failing, calls are suspended for a while");
+        }
+    }
+
+    @FunctionalInterface
+    interface Call<T> {
+        T call();
+    }
+
+    @FunctionalInterface
+    interface Sleeper {
+        void sleep(long millis) throws InterruptedException;
+    }
+}
@@ -0,0 +1,103 @@
+package io.jenkins.plugins.aws.global_configuration;
+
+import edu.umd.cs.findbugs.annotations.CheckForNull;
+import edu.umd.cs.findbugs.annotations.NonNull;
+import java.net.URI;
+import java.time.Duration;
+import org.kohsuke.accmod.Restricted;
+import org.kohsuke.accmod.restrictions.NoExternalUse;
+import software.amazon.awssdk.auth.credentials.AwsCredentials;
+import software.amazon.awssdk.auth.credentials.StaticCredentialsProvider;
+import software.amazon.awssdk.awscore.retry.AwsRetryStrategy;
+import software.amazon.awssdk.http.SdkHttpClient;
+import software.amazon.awssdk.regions.Region;
+import software.amazon.awssdk.services.sts.StsClient;
+import software.amazon.awssdk.services.sts.StsClientBuilder;
+
+/**
+ * Registry of long-lived {@link StsClient}s, one per region and credentials, sharing the HTTP connection pool of the
+ * {@link AwsClientFactory}.
+ * Clients are reused across session credentials requests. As they are bound to the AWS credentials themselves, a client
+ * is never used with outdated credentials, so clients are not closed when the configuration or the Jenkins credentials
+ * change. The least recently used client is retired when there are too many, and closed once the calls in progress
+ * with it are done. Every client is closed when Jenkins stops.
+ */
+final class StsClients {
+
+    /**
+     * Maximum number of STS clients kept open.
+     */
+    @SuppressWarnings("FieldMayBeFinal")
+    private static int MAX_CLIENTS = Integer.getInteger(StsClients.class.getName() + ".maxClients", 64);
+
+    /**
+     * Seconds after which a call to the AWS token service times out.
+     */
+    @SuppressWarnings("FieldMayBeFinal")
+    private static int CALL_TIMEOUT = Integer.getInteger(StsClients.class.getName() + ".callTimeout", 10);
+
+    /**
+     * Endpoint of the AWS token service to use instead of the regional one, e.g. a VPC endpoint or a local stand-in.
+     */
+    @CheckForNull
+    private static volatile String ENDPOINT = System.getProperty(StsClients.class.getName() + ".endpoint");
+
+    private final ClientCache<Key, StsClient> clients = new ClientCache<>("STS clients", () -> MAX_CLIENTS);
+
+    private final AwsClientFactory clientFactory;
+
+    StsClients(@NonNull AwsClientFactory clientFactory) {
+        this.clientFactory = clientFactory;
+    }
+
+    /**
+     * @return the client to call STS in the given region with the given credentials, which is not closed before the
+     *         lease is.
+     */
+    @NonNull
+    ClientCache.Lease<StsClient> acquire(@CheckForNull String region, @NonNull AwsCredentials credentials) {
+        SdkHttpClient sharedHttpClient = clientFactory.getHttpClient();
+        return clients.acquire(new Key(region, credentials), it -> create(it, sharedHttpClient));
+    }
+
+    private static StsClient create(Key key, SdkHttpClient httpClient) {
+        StsClientBuilder builder = StsClient.builder()
+                .credentialsProvider(StaticCredentialsProvider.create(key.credentials()))
+                .httpClient(httpClient)
+                // retries are done by StsCallGuard, with a backoff shared by every caller
+                .overrideConfiguration(it -> it.retryStrategy(AwsRetryStrategy.doNotRetry())
+                        .apiCallTimeout(Duration.ofSeconds(CALL_TIMEOUT)));
+        if (key.region() != null) {
+            builder.region(Region.of(key.region()));
+        }
+        String endpoint = ENDPOINT;
+        if (endpoint != null) {
+            builder.endpointOverride(URI.create(endpoint));
+        }
+        return builder.build();
+    }
+
+    /**
+     * Sets the endpoint of the AWS token service of the clients created from now on, e.g. a local stand-in in tests.
+     *
+     * @param endpoint
+     *            the endpoint, or {@code null} for the regional one.
+     */
+    @Restricted(NoExternalUse.class)
+    static void setEndpoint(@CheckForNull String endpoint) {
+        ENDPOINT = endpoint;
+    }
+
+    /**
+     * Closes every STS client when Jenkins stops.
+     */
+    void close() {
+        clients.close();
+    }
+
+    int size() {
+        return clients.size();
+    }
+
+    private record Key(@CheckForNull String region, @NonNull AwsCredentials credentials) {}
+}
@@ -0,0 +1,77 @@
+Behaviour.specify(".aws-credentials-filter", "aws-credentials-filter", 0, function (filter) {
+  const container = filter.closest(".aws-credentials");
+  const status = container.querySelector(".aws-credentials-filter-status");
+  const searchUrl = container.dataset.searchUrl;
+  let timer;
+  let request = 0;
+
+  function select() {
+    return container.querySelector("select[name='_.credentialsId']");
+  }
+
+  function search(offset) {
+    const current = ++request;
+    const body = new URLSearchParams({ q: filter.value, offset: offset });
+    const headers = {};
+    const crumbHeader = document.head.dataset.crumbHeader;
+    if (crumbHeader) {
+      headers[crumbHeader] = document.head.dataset.crumbValue;
+    }
+    fetch(searchUrl, { method: "post", headers: headers, body: body }).then(function (rsp) {
+      if (!rsp.ok || current !== request) {
+        return;
+      }
+      rsp.json().then(function (json) {
+        if (current === request) {
+          update(json.data, offset);
+        }
+      });
+    });
+  }
+
+  function update(page, offset) {
+    const list = select();
+    if (!list) {
+      return;
+    }
+    if (offset === 0) {
+      // keep the instance profile entry and the selected credential
+      Array.from(list.options).forEach(function (option) {
+        if (option.value !== "" && !option.selected) {
+          option.remove();
+        }
+      });
+    }
+    page.items.forEach(function (item) {
+      if (!Array.from(list.options).some((option) => option.value === item.id)) {
+        list.add(new Option(item.name, item.id));
+      }
+    });
+    const shown = page.offset + page.items.length;
+    status.textContent = "";
+    if (shown < page.total) {
+      status.append(shown + " of " + page.total + " credentials listed. ");
+      const more = document.createElement("button");
+      more.type = "button";
+      more.className = "jenkins-button jenkins-button--tertiary";
+      more.textContent = "Show more";
+      more.addEventListener("click", function () {
+        search(shown);
+      });
+      status.append(more);
+    }
+  }
+
+  filter.addEventListener("input", function () {
+    clearTimeout(timer);
+    timer = setTimeout(function () {
+      search(0);
+    }, 300);
+  });
+  filter.addEventListener("keydown", function (e) {
+    // do not submit the form
+    if (e.key === "Enter") {
+      e.preventDefault();
+    }
+  });
+});
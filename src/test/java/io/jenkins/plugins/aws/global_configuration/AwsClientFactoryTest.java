@@ -0,0 +1,77 @@
+package io.jenkins.plugins.aws.global_configuration;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNotSame;
+import static org.junit.jupiter.api.Assertions.assertSame;
+
+import com.cloudbees.jenkins.plugins.awscredentials.AWSCredentialsImpl;
+import com.cloudbees.plugins.credentials.CredentialsScope;
+import com.cloudbees.plugins.credentials.SystemCredentialsProvider;
+import java.net.URI;
+import java.util.function.Supplier;
+import org.junit.jupiter.api.Test;
+import org.jvnet.hudson.test.JenkinsRule;
+import org.jvnet.hudson.test.junit.jupiter.WithJenkins;
+import software.amazon.awssdk.regions.Region;
+import software.amazon.awssdk.services.sts.StsClient;
+import software.amazon.awssdk.services.sts.StsClientBuilder;
+
+@WithJenkins
+class AwsClientFactoryTest {
+
+    @Test
+    void clientsAreCachedPerServiceRegionAndCredentials(JenkinsRule r) {
+        AwsClientFactory factory = CredentialsAwsGlobalConfiguration.get().getClientFactory();
+        StsClient client = factory.client(StsClient.class, StsClient::builder, "us-east-1", "aws");
+        assertSame(client, factory.client(StsClient.class, StsClient::builder, "us-east-1", "aws"));
+        assertNotSame(client, factory.client(StsClient.class, StsClient::builder, "eu-west-1", "aws"));
+        assertNotSame(client, factory.client(StsClient.class, StsClient::builder, "us-east-1", "other"));
+    }
+
+    @Test
+    void configuredRegionByDefault(JenkinsRule r) {
+        CredentialsAwsGlobalConfiguration configuration = CredentialsAwsGlobalConfiguration.get();
+        configuration.setRegion(Region.EU_WEST_1.id());
+        StsClient client = configuration.getClientFactory().client(StsClient.class, StsClient::builder, null, null);
+        assertEquals(Region.EU_WEST_1, client.serviceClientConfiguration().region());
+    }
+
+    @Test
+    void clientsAreOnlyReplacedWhenTheConfigurationChanges(JenkinsRule r) throws Exception {
+        CredentialsAwsGlobalConfiguration configuration = CredentialsAwsGlobalConfiguration.get();
+        AwsClientFactory factory = configuration.getClientFactory();
+        StsClient client = factory.client(StsClient.class, StsClient::builder, "us-east-1", "aws");
+
+        SystemCredentialsProvider provider = SystemCredentialsProvider.getInstance();
+        provider.getCredentials().add(new AWSCredentialsImpl(CredentialsScope.GLOBAL, "aws", "xxx", "secret", "aws"));
+        provider.save();
+        assertSame(
+                client,
+                factory.client(StsClient.class, StsClient::builder, "us-east-1", "aws"),
+                "clients resolve the current credentials");
+
+        configuration.setRegion(Region.EU_WEST_1.id());
+        assertNotSame(client, factory.client(StsClient.class, StsClient::builder, "us-east-1", "aws"));
+    }
+
+    @Test
+    void sharedHttpClientCannotBeClosedByItsUsers(JenkinsRule r) throws Exception {
+        try (FakeStsServer sts = new FakeStsServer()) {
+            StsClients.setEndpoint(sts.getEndpoint());
+            SystemCredentialsProvider.getInstance()
+                    .getCredentials()
+                    .add(new AWSCredentialsImpl(CredentialsScope.GLOBAL, "aws", "xxx", "secret", "aws"));
+            AwsClientFactory factory = CredentialsAwsGlobalConfiguration.get().getClientFactory();
+            Supplier<StsClientBuilder> builder =
+                    () -> StsClient.builder().endpointOverride(URI.create(sts.getEndpoint()));
+
+            factory.getHttpClient().close();
+            factory.client(StsClient.class, builder, "us-east-1", "aws").close();
+            StsClient client = factory.client(StsClient.class, builder, "eu-west-1", "aws");
+            assertNotNull(client.getSessionToken().credentials(), "the shared connection pool is still open");
+        } finally {
+            StsClients.setEndpoint(null);
+        }
+    }
+}
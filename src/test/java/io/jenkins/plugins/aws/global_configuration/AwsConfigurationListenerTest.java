@@ -0,0 +1,130 @@
+package io.jenkins.plugins.aws.global_configuration;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+import com.cloudbees.jenkins.plugins.awscredentials.AWSCredentialsImpl;
+import com.cloudbees.jenkins.plugins.awscredentials.AmazonWebServicesCredentials;
+import com.cloudbees.plugins.credentials.CredentialsScope;
+import com.cloudbees.plugins.credentials.SystemCredentialsProvider;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import net.sf.json.JSONObject;
+import org.htmlunit.html.HtmlForm;
+import org.junit.jupiter.api.Test;
+import org.jvnet.hudson.test.JenkinsRule;
+import org.jvnet.hudson.test.TestExtension;
+import org.jvnet.hudson.test.junit.jupiter.WithJenkins;
+import org.kohsuke.stapler.Stapler;
+import software.amazon.awssdk.regions.Region;
+
+@WithJenkins
+class AwsConfigurationListenerTest {
+
+    @Test
+    void setters(JenkinsRule r) throws Exception {
+        BlockingQueue<AwsConfigurationEvent> events = r.jenkins
+                .getExtensionList(AwsConfigurationListener.class)
+                .get(RecordingListener.class)
+                .events;
+        CredentialsAwsGlobalConfiguration configuration = CredentialsAwsGlobalConfiguration.get();
+
+        configuration.setRegion(Region.EU_WEST_1.id());
+        AwsConfigurationEvent event = events.poll(10, TimeUnit.SECONDS);
+        assertNotNull(event);
+        assertEquals(AwsConfigurationEvent.Type.REGION, event.getType());
+        assertNull(event.getOldRegion());
+        assertEquals(Region.EU_WEST_1.id(), event.getNewRegion());
+
+        configuration.setCredentialsId("aws");
+        event = events.poll(10, TimeUnit.SECONDS);
+        assertNotNull(event);
+        assertEquals(AwsConfigurationEvent.Type.CREDENTIALS_ID, event.getType());
+        assertEquals("aws", event.getNewCredentialsId());
+
+        configuration.setCredentialsId("aws");
+        assertNull(events.poll(1, TimeUnit.SECONDS), "nothing changed");
+    }
+
+    @Test
+    void form(JenkinsRule r) throws Exception {
+        BlockingQueue<AwsConfigurationEvent> events = r.jenkins
+                .getExtensionList(AwsConfigurationListener.class)
+                .get(RecordingListener.class)
+                .events;
+        HtmlForm config = r.createWebClient().goTo("aws").getFormByName("config");
+        config.getSelectByName("_.region").setSelectedAttribute(Region.SA_EAST_1.id(), true);
+        r.submit(config);
+
+        AwsConfigurationEvent event = events.poll(10, TimeUnit.SECONDS);
+        assertNotNull(event);
+        assertEquals(AwsConfigurationEvent.Type.CONFIGURATION, event.getType());
+        assertEquals(Region.SA_EAST_1.id(), event.getNewRegion());
+        assertNull(events.poll(1, TimeUnit.SECONDS), "notified once");
+    }
+
+    @Test
+    void failedForm(JenkinsRule r) throws Throwable {
+        BlockingQueue<AwsConfigurationEvent> events = r.jenkins
+                .getExtensionList(AwsConfigurationListener.class)
+                .get(RecordingListener.class)
+                .events;
+        CredentialsAwsGlobalConfiguration configuration = CredentialsAwsGlobalConfiguration.get();
+        JSONObject json = new JSONObject().element("credentialsId", "aws").element("region", "no-valid");
+        r.executeOnServer(() -> assertThrows(
+                RuntimeException.class, () -> configuration.configure(Stapler.getCurrentRequest2(), json)));
+
+        configuration.setRegion(Region.EU_WEST_1.id());
+
+        AwsConfigurationEvent event = events.poll(10, TimeUnit.SECONDS);
+        assertNotNull(event);
+        assertEquals(AwsConfigurationEvent.Type.REGION, event.getType(), "the failed form is not notified");
+        assertNull(events.poll(1, TimeUnit.SECONDS));
+    }
+
+    @Test
+    void credentialsUpdated(JenkinsRule r) throws Exception {
+        BlockingQueue<AwsConfigurationEvent> events = r.jenkins
+                .getExtensionList(AwsConfigurationListener.class)
+                .get(RecordingListener.class)
+                .events;
+        CredentialsAwsGlobalConfiguration configuration = CredentialsAwsGlobalConfiguration.get();
+        configuration.setCredentialsId("aws");
+        assertNotNull(events.poll(10, TimeUnit.SECONDS));
+        SystemCredentialsProvider provider = SystemCredentialsProvider.getInstance();
+        AmazonWebServicesCredentials credentials =
+                new AWSCredentialsImpl(CredentialsScope.GLOBAL, "aws", "xxx", "secret", "before");
+        provider.getCredentials().add(credentials);
+        provider.save();
+        assertNull(events.poll(1, TimeUnit.SECONDS), "the credentials were not used yet");
+        assertNotNull(configuration.getCredentials());
+
+        provider.getCredentials().add(new AWSCredentialsImpl(CredentialsScope.GLOBAL, "other", "yyy", "secret", ""));
+        provider.save();
+        assertNull(events.poll(1, TimeUnit.SECONDS), "other credentials changed");
+
+        assertNotNull(configuration.getCredentials());
+        provider.getCredentials()
+                .set(
+                        provider.getCredentials().indexOf(credentials),
+                        new AWSCredentialsImpl(CredentialsScope.GLOBAL, "aws", "zzz", "secret", "after"));
+        provider.save();
+        AwsConfigurationEvent event = events.poll(10, TimeUnit.SECONDS);
+        assertNotNull(event);
+        assertEquals(AwsConfigurationEvent.Type.CREDENTIALS, event.getType());
+        assertEquals("aws", event.getNewCredentialsId());
+    }
+
+    @TestExtension
+    public static class RecordingListener extends AwsConfigurationListener {
+        final BlockingQueue<AwsConfigurationEvent> events = new LinkedBlockingQueue<>();
+
+        @Override
+        public void onChange(AwsConfigurationEvent event) {
+            events.add(event);
+        }
+    }
+}
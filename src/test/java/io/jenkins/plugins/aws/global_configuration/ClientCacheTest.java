@@ -0,0 +1,86 @@
+package io.jenkins.plugins.aws.global_configuration;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotSame;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.time.Duration;
+import java.time.Instant;
+import org.junit.jupiter.api.Test;
+import software.amazon.awssdk.utils.SdkAutoCloseable;
+
+class ClientCacheTest {
+
+    private final SessionCredentialsCacheTest.MutableClock clock =
+            new SessionCredentialsCacheTest.MutableClock(Instant.parse("2024-01-01T00:00:00Z"));
+
+    private final ClientCache<String, FakeClient> cache = new ClientCache<>("fake clients", () -> 3, clock);
+
+    @Test
+    void leastRecentlyUsedClientIsRetired() {
+        FakeClient first = use("first");
+        FakeClient second = use("second");
+        use("third");
+        assertSame(first, use("first"));
+
+        use("fourth");
+
+        assertEquals(3, cache.size(), "a single client is retired");
+        assertTrue(second.closed, "closed as it is not in use");
+        assertFalse(first.closed);
+        assertSame(first, use("first"), "recently used clients are kept");
+        assertNotSame(second, use("second"));
+    }
+
+    @Test
+    void clientInUseIsClosedOnceReleased() {
+        ClientCache.Lease<FakeClient> lease = cache.acquire("first", FakeClient::new);
+        FakeClient first = lease.get();
+
+        cache.retireAll();
+        assertFalse(first.closed, "a call is in progress");
+        assertNotSame(first, use("first"), "not handed out anymore");
+
+        lease.close();
+        assertTrue(first.closed);
+    }
+
+    @Test
+    void handedOutClientIsKeptOpenForItsCallers() {
+        FakeClient first = cache.get("first", FakeClient::new);
+        cache.retireAll();
+        assertFalse(first.closed, "its callers may still use it");
+
+        FakeClient second = cache.get("second", FakeClient::new);
+        clock.advance(Duration.ofMinutes(2));
+        cache.retireAll();
+        assertTrue(second.closed, "its callers had time to complete their calls");
+    }
+
+    private FakeClient use(String key) {
+        try (ClientCache.Lease<FakeClient> lease = cache.acquire(key, FakeClient::new)) {
+            return lease.get();
+        }
+    }
+
+    private static final class FakeClient implements SdkAutoCloseable {
+        private final String key;
+        private volatile boolean closed;
+
+        FakeClient(String key) {
+            this.key = key;
+        }
+
+        @Override
+        public void close() {
+            closed = true;
+        }
+
+        @Override
+        public String toString() {
+            return key;
+        }
+    }
+}
@@ -0,0 +1,130 @@
+package io.jenkins.plugins.aws.global_configuration;
+
+import com.cloudbees.jenkins.plugins.awscredentials.AWSCredentialsImpl;
+import com.cloudbees.jenkins.plugins.awscredentials.AmazonWebServicesCredentials;
+import com.cloudbees.plugins.credentials.CredentialsScope;
+import com.cloudbees.plugins.credentials.SystemCredentialsProvider;
+import hudson.util.FormValidation;
+import hudson.util.ListBoxModel;
+import java.io.IOException;
+import jenkins.benchmark.jmh.JmhBenchmark;
+import jenkins.benchmark.jmh.JmhBenchmarkState;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Threads;
+import software.amazon.awssdk.auth.credentials.AwsSessionCredentials;
+
+/**
+ * Throughput and latency of the hot paths of {@link CredentialsAwsGlobalConfiguration}, single and multi-threaded.
+ * The token service is a local {@link FakeStsServer} so the results do not depend on the network.
+ */
+@JmhBenchmark
+@BenchmarkMode({Mode.Throughput, Mode.SampleTime})
+public class CredentialsAwsGlobalConfigurationBenchmark {
+
+    private static final String REGION = "us-east-1";
+
+    public static class CredentialsState extends JmhBenchmarkState {
+        @Param({"10", "1000", "10000"})
+        public int credentials;
+
+        String credentialsId;
+
+        @Override
+        public void setup() throws IOException {
+            SystemCredentialsProvider provider = SystemCredentialsProvider.getInstance();
+            for (int i = 0; i < credentials; i++) {
+                provider.getCredentials()
+                        .add(new AWSCredentialsImpl(
+                                CredentialsScope.GLOBAL, "aws-" + i, "key" + i, "secret", "benchmark " + i));
+            }
+            provider.save();
+            credentialsId = "aws-" + credentials / 2;
+        }
+    }
+
+    public static class StsState extends JmhBenchmarkState {
+        FakeStsServer sts;
+
+        SessionCredentialsCache.Key key;
+
+        @Override
+        public void setup() throws IOException {
+            sts = new FakeStsServer();
+            StsClients.setEndpoint(sts.getEndpoint());
+            SystemCredentialsProvider provider = SystemCredentialsProvider.getInstance();
+            provider.getCredentials()
+                    .add(new AWSCredentialsImpl(CredentialsScope.GLOBAL, "aws", "key", "secret", "benchmark"));
+            provider.save();
+            key = new SessionCredentialsCache.Key(
+                    REGION, "aws", CredentialsAwsGlobalConfiguration.get().getSessionDuration());
+        }
+
+        @Override
+        public void tearDown() {
+            StsClients.setEndpoint(null);
+            sts.close();
+        }
+    }
+
+    public static class RegionState extends JmhBenchmarkState {}
+
+    @Benchmark
+    @Threads(1)
+    public AmazonWebServicesCredentials getCredentials(CredentialsState state) {
+        return CredentialsAwsGlobalConfiguration.get().getCredentials(state.credentialsId);
+    }
+
+    @Benchmark
+    @Threads(8)
+    public AmazonWebServicesCredentials getCredentialsConcurrently(CredentialsState state) {
+        return CredentialsAwsGlobalConfiguration.get().getCredentials(state.credentialsId);
+    }
+
+    @Benchmark
+    @Threads(1)
+    public AwsSessionCredentials sessionCredentials(StsState state) throws IOException {
+        return CredentialsAwsGlobalConfiguration.get().sessionCredentials(REGION, "aws");
+    }
+
+    @Benchmark
+    @Threads(8)
+    public AwsSessionCredentials sessionCredentialsConcurrently(StsState state) throws IOException {
+        return CredentialsAwsGlobalConfiguration.get().sessionCredentials(REGION, "aws");
+    }
+
+    /**
+     * Requests new session credentials on every call, measuring the round-trip to the token service.
+     */
+    @Benchmark
+    @Threads(1)
+    public void sessionCredentialsFromSts(StsState state) throws IOException {
+        CredentialsAwsGlobalConfiguration.get().refreshSessionCredentials(state.key);
+    }
+
+    @Benchmark
+    @Threads(8)
+    public void sessionCredentialsFromStsConcurrently(StsState state) throws IOException {
+        CredentialsAwsGlobalConfiguration.get().refreshSessionCredentials(state.key);
+    }
+
+    @Benchmark
+    @Threads(1)
+    public ListBoxModel doFillRegionItems(RegionState state) {
+        return CredentialsAwsGlobalConfiguration.get().doFillRegionItems();
+    }
+
+    @Benchmark
+    @Threads(1)
+    public FormValidation doCheckRegion(RegionState state) {
+        return CredentialsAwsGlobalConfiguration.get().doCheckRegion("eu-west-1");
+    }
+
+    @Benchmark
+    @Threads(8)
+    public FormValidation doCheckRegionConcurrently(RegionState state) {
+        return CredentialsAwsGlobalConfiguration.get().doCheckRegion("eu-west-1");
+    }
+}
@@ -0,0 +1,267 @@
+package io.jenkins.plugins.aws.global_configuration;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.junit.jupiter.api.Assumptions.assumeTrue;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+import com.cloudbees.jenkins.plugins.awscredentials.AWSCredentialsImpl;
+import com.cloudbees.jenkins.plugins.awscredentials.AmazonWebServicesCredentials;
+import com.cloudbees.plugins.credentials.CredentialsScope;
+import com.cloudbees.plugins.credentials.SystemCredentialsProvider;
+import java.lang.management.ManagementFactory;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import javax.management.JMException;
+import javax.management.ObjectName;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.jvnet.hudson.test.JenkinsRule;
+import org.jvnet.hudson.test.junit.jupiter.WithJenkins;
+import software.amazon.awssdk.auth.credentials.AwsSessionCredentials;
+
+/**
+ * Drives many concurrent callers through every path of {@link CredentialsAwsGlobalConfiguration#sessionCredentials}
+ * against a local {@link FakeStsServer}, which also stands in for the instance metadata service. It checks the number
+ * of calls to AWS and that no clients, threads or file descriptors leak, e.g. from a client created per call. The
+ * throughput and tail latency depend on the machine, they are only checked with {@code mvn -Pload test}.
+ */
+@WithJenkins
+class CredentialsAwsGlobalConfigurationLoadTest {
+
+    private static final int THREADS = 32;
+
+    private static final int CALLS_PER_THREAD = 300;
+
+    private static final String[] REGIONS = {"us-east-1", "eu-west-1"};
+
+    private static final int CREDENTIALS = 4;
+
+    private static final String[] AWS_SYSTEM_PROPERTIES = {
+        "aws.ec2MetadataServiceEndpoint", "aws.sharedCredentialsFile", "aws.configFile"
+    };
+
+    private FakeStsServer sts;
+
+    @BeforeEach
+    void startFakeServer(@TempDir Path tmp) throws Exception {
+        assumeTrue(
+                System.getenv("AWS_ACCESS_KEY_ID") == null
+                        && System.getenv("AWS_CONTAINER_CREDENTIALS_RELATIVE_URI") == null
+                        && System.getenv("AWS_CONTAINER_CREDENTIALS_FULL_URI") == null
+                        && System.getenv("AWS_WEB_IDENTITY_TOKEN_FILE") == null,
+                "the instance profile is only reached when no other AWS credentials are configured");
+        sts = new FakeStsServer();
+        sts.setLatencyMillis(20);
+        StsClients.setEndpoint(sts.getEndpoint());
+        System.setProperty("aws.ec2MetadataServiceEndpoint", sts.getEndpoint());
+        System.setProperty("aws.sharedCredentialsFile", tmp.resolve("credentials").toString());
+        System.setProperty("aws.configFile", tmp.resolve("config").toString());
+    }
+
+    @AfterEach
+    void stopFakeServer() {
+        StsClients.setEndpoint(null);
+        Arrays.stream(AWS_SYSTEM_PROPERTIES).forEach(System::clearProperty);
+        if (sts != null) {
+            sts.close();
+        }
+    }
+
+    @Test
+    void everyPathUnderLoad(JenkinsRule r) throws Exception {
+        addCredentials();
+        CredentialsAwsGlobalConfiguration descriptor = CredentialsAwsGlobalConfiguration.get();
+        Call call = everyPath(descriptor);
+
+        // the pools, caches and clients reach their steady state
+        assertEquals(0, run(THREADS, 30, call).failures());
+        int threads = threadCount();
+        long fileDescriptors = openFileDescriptors();
+
+        Load load = run(THREADS, CALLS_PER_THREAD, call);
+
+        assertEquals(0, load.failures());
+        assertEquals(
+                CREDENTIALS * REGIONS.length,
+                descriptor.getStsClients().size(),
+                "one STS client per credentials and region");
+        assertEquals(
+                CREDENTIALS * REGIONS.length,
+                sts.getRequests("GetSessionToken"),
+                "one session token per credentials and region");
+        assertTrue(
+                sts.getRequests(FakeStsServer.INSTANCE_CREDENTIALS) <= 2,
+                "the credentials of the instance profile are cached by the SDK");
+        assertTrue(threadCount() - threads <= 10, "threads went from " + threads + " to " + threadCount());
+        if (fileDescriptors >= 0) {
+            assertTrue(
+                    openFileDescriptors() - fileDescriptors <= 32,
+                    "file descriptors went from " + fileDescriptors + " to " + openFileDescriptors());
+        }
+    }
+
+    @Tag("load")
+    @Test
+    void throughputAndLatency(JenkinsRule r) throws Exception {
+        addCredentials();
+        Call call = everyPath(CredentialsAwsGlobalConfiguration.get());
+        assertEquals(0, run(THREADS, 30, call).failures());
+
+        Load load = run(THREADS, CALLS_PER_THREAD, call);
+
+        assertEquals(0, load.failures());
+        assertTrue(load.throughput() > 500, "throughput of " + load.throughput() + " calls/s");
+        assertTrue(load.p99().compareTo(Duration.ofSeconds(1)) < 0, "p99 latency of " + load.p99());
+    }
+
+    @Test
+    void throttlingIsAbsorbed(JenkinsRule r) throws Exception {
+        addCredentials();
+        CredentialsAwsGlobalConfiguration descriptor = CredentialsAwsGlobalConfiguration.get();
+        sts.throttle(2);
+
+        Load load = run(THREADS, 20, (thread, i) -> descriptor.sessionCredentials(REGIONS[0], "aws-0"));
+
+        assertEquals(0, load.failures(), "callers wait for the retries");
+        assertEquals(3, sts.getRequests("GetSessionToken"), "concurrent callers share the retries");
+        assertEquals(2, descriptor.getMetrics().getStsRetries());
+    }
+
+    @Test
+    void failuresOpenTheCircuit(JenkinsRule r) throws Exception {
+        addCredentials();
+        CredentialsAwsGlobalConfiguration descriptor = CredentialsAwsGlobalConfiguration.get();
+        sts.fail(Integer.MAX_VALUE);
+
+        Load load = run(THREADS, 20, (thread, i) -> descriptor.sessionCredentials(REGIONS[0], "aws-0"));
+
+        assertEquals(THREADS * 20, load.failures());
+        assertTrue(
+                sts.getRequests("GetSessionToken") <= 5,
+                sts.getRequests("GetSessionToken") + " calls to the failing token service");
+        assertTrue(descriptor.getMetrics().getStsRejections() > 0, "calls fail fast once the circuit is open");
+    }
+
+    /**
+     * Calls go through the token service, the session credentials as is and the instance profile in turn.
+     */
+    private static Call everyPath(CredentialsAwsGlobalConfiguration descriptor) {
+        return (thread, i) -> {
+            String region = REGIONS[i % REGIONS.length];
+            switch (i % 3) {
+                case 0 -> descriptor.sessionCredentials(region, "aws-" + thread % CREDENTIALS);
+                case 1 -> descriptor.sessionCredentials(region, "session");
+                default -> descriptor.sessionCredentials(region, null);
+            }
+        };
+    }
+
+    /**
+     * Key and secret credentials, resolved through the token service, and credentials that are session credentials
+     * already. They are not saved, the index of the credentials is built on first use.
+     */
+    private static void addCredentials() {
+        SystemCredentialsProvider provider = SystemCredentialsProvider.getInstance();
+        for (int i = 0; i < CREDENTIALS; i++) {
+            provider.getCredentials()
+                    .add(new AWSCredentialsImpl(CredentialsScope.GLOBAL, "aws-" + i, "AKIA" + i, "secret", "load"));
+        }
+        AmazonWebServicesCredentials session = mock(AmazonWebServicesCredentials.class);
+        when(session.getId()).thenReturn("session");
+        when(session.getScope()).thenReturn(CredentialsScope.GLOBAL);
+        when(session.getDescription()).thenReturn("session");
+        when(session.getDisplayName()).thenReturn("session");
+        when(session.resolveCredentials()).thenReturn(AwsSessionCredentials.create("ASIASESSION", "secret", "token"));
+        provider.getCredentials().add(session);
+    }
+
+    private static Load run(int threads, int callsPerThread, Call call) throws Exception {
+        ExecutorService executor = Executors.newFixedThreadPool(threads);
+        try {
+            CountDownLatch start = new CountDownLatch(1);
+            AtomicInteger failures = new AtomicInteger();
+            List<Future<long[]>> results = new ArrayList<>();
+            for (int t = 0; t < threads; t++) {
+                int thread = t;
+                results.add(executor.submit(() -> {
+                    start.await();
+                    long[] latencies = new long[callsPerThread];
+                    for (int i = 0; i < callsPerThread; i++) {
+                        long begin = System.nanoTime();
+                        try {
+                            call.call(thread, i);
+                        } catch (Exception e) {
+                            failures.incrementAndGet();
+                        }
+                        latencies[i] = System.nanoTime() - begin;
+                    }
+                    return latencies;
+                }));
+            }
+            long begin = System.nanoTime();
+            start.countDown();
+            long[] latencies = new long[threads * callsPerThread];
+            for (int t = 0; t < threads; t++) {
+                long[] threadLatencies = results.get(t).get(1, TimeUnit.MINUTES);
+                System.arraycopy(threadLatencies, 0, latencies, t * callsPerThread, callsPerThread);
+            }
+            long elapsed = System.nanoTime() - begin;
+            Arrays.sort(latencies);
+            return new Load(
+                    latencies.length,
+                    failures.get(),
+                    elapsed,
+                    latencies[Math.min(latencies.length - 1, (int) (latencies.length * 0.99))]);
+        } finally {
+            executor.shutdownNow();
+            assertTrue(executor.awaitTermination(10, TimeUnit.SECONDS));
+        }
+    }
+
+    private static int threadCount() {
+        return ManagementFactory.getThreadMXBean().getThreadCount();
+    }
+
+    /**
+     * @return the number of open file descriptors of the JVM, or -1 if it is not known on this platform.
+     */
+    private static long openFileDescriptors() {
+        try {
+            ObjectName os = new ObjectName(ManagementFactory.OPERATING_SYSTEM_MXBEAN_NAME);
+            // only known on Unix, through an attribute specific to the JDK
+            Object count = ManagementFactory.getPlatformMBeanServer().getAttribute(os, "OpenFileDescriptorCount");
+            return count instanceof Long value ? value : -1;
+        } catch (JMException e) {
+            return -1;
+        }
+    }
+
+    @FunctionalInterface
+    private interface Call {
+        void call(int thread, int i) throws Exception;
+    }
+
+    private record Load(int calls, int failures, long elapsedNanos, long p99Nanos) {
+        double throughput() {
+            return calls * (double) TimeUnit.SECONDS.toNanos(1) / elapsedNanos;
+        }
+
+        Duration p99() {
+            return Duration.ofNanos(p99Nanos);
+        }
+    }
+}
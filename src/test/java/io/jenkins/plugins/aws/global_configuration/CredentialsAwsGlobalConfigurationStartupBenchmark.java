@@ -0,0 +1,45 @@
+package io.jenkins.plugins.aws.global_configuration;
+
+import java.util.concurrent.TimeUnit;
+import jenkins.benchmark.jmh.JmhBenchmark;
+import jenkins.benchmark.jmh.JmhBenchmarkState;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import software.amazon.awssdk.regions.Region;
+
+/**
+ * Cost of creating {@link CredentialsAwsGlobalConfiguration} while Jenkins discovers its extensions, compared to
+ * creating it and reading its configuration file as the constructor used to do.
+ */
+@JmhBenchmark
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class CredentialsAwsGlobalConfigurationStartupBenchmark {
+
+    public static class ConfiguredState extends JmhBenchmarkState {
+        @Override
+        public void setup() {
+            CredentialsAwsGlobalConfiguration configuration = CredentialsAwsGlobalConfiguration.get();
+            configuration.setRegion(Region.EU_WEST_1.id());
+            configuration.setCredentialsId("aws");
+        }
+    }
+
+    /**
+     * What extension discovery pays now.
+     */
+    @Benchmark
+    public CredentialsAwsGlobalConfiguration create(ConfiguredState state) {
+        return new CredentialsAwsGlobalConfiguration();
+    }
+
+    /**
+     * What extension discovery used to pay, and what the first use pays now.
+     */
+    @Benchmark
+    public String createAndLoad(ConfiguredState state) {
+        return new CredentialsAwsGlobalConfiguration().getRegion();
+    }
+}
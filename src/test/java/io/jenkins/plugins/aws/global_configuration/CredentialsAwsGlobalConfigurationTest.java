@@ -25,19 +25,64 @@
 package io.jenkins.plugins.aws.global_configuration;
 
 import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertInstanceOf;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
 import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
 
+import com.amazonaws.auth.AWSCredentials;
+import com.amazonaws.auth.AWSSessionCredentials;
 import com.cloudbees.jenkins.plugins.awscredentials.AWSCredentialsImpl;
 import com.cloudbees.jenkins.plugins.awscredentials.AmazonWebServicesCredentials;
 import com.cloudbees.plugins.credentials.CredentialsScope;
 import com.cloudbees.plugins.credentials.SystemCredentialsProvider;
+import com.codahale.metrics.Metric;
+import com.codahale.metrics.Timer;
+import hudson.ExtensionList;
+import hudson.model.Descriptor;
+import hudson.remoting.VirtualChannel;
 import hudson.util.FormValidation;
+import hudson.util.ListBoxModel;
+import java.io.File;
+import java.io.IOException;
+import java.net.URL;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.stream.Collectors;
+import jdk.jfr.Configuration;
+import jdk.jfr.Recording;
+import jdk.jfr.consumer.RecordedEvent;
+import jdk.jfr.consumer.RecordingFile;
+import jenkins.security.MasterToSlaveCallable;
+import net.sf.json.JSONObject;
+import org.htmlunit.HttpMethod;
+import org.htmlunit.WebRequest;
 import org.htmlunit.html.HtmlForm;
+import org.htmlunit.html.HtmlPage;
 import org.htmlunit.html.HtmlSelect;
+import org.htmlunit.html.HtmlTableRow;
 import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
 import org.jvnet.hudson.test.JenkinsRule;
+import org.jvnet.hudson.test.TestExtension;
 import org.jvnet.hudson.test.junit.jupiter.WithJenkins;
+import org.kohsuke.stapler.Stapler;
+import org.kohsuke.stapler.StaplerRequest2;
+import software.amazon.awssdk.auth.credentials.AwsSessionCredentials;
+import software.amazon.awssdk.core.exception.SdkClientException;
 import software.amazon.awssdk.regions.Region;
+import software.amazon.awssdk.services.sts.model.StsException;
 
 @WithJenkins
 class CredentialsAwsGlobalConfigurationTest {
@@ -50,6 +95,14 @@ class CredentialsAwsGlobalConfigurationTest {
         assertEquals(FormValidation.Kind.ERROR, descriptor.doCheckRegion("no-valid").kind);
     }
 
+    @Test
+    void doFillRegionItems(JenkinsRule r) {
+        ListBoxModel regions = CredentialsAwsGlobalConfiguration.get().doFillRegionItems();
+        assertEquals(Region.regions().size() + 1, regions.size());
+        assertEquals("", regions.get(0).value, "Auto comes first");
+        assertTrue(regions.stream().anyMatch(it -> it.value.equals(Region.SA_EAST_1.id())));
+    }
+
     @Test
     void uiAndStorage(JenkinsRule r) throws Throwable {
         assertNull(CredentialsAwsGlobalConfiguration.get().getRegion(), "not set initially");
@@ -74,6 +127,64 @@ class CredentialsAwsGlobalConfigurationTest {
                 "still there after restart of Jenkins");
     }
 
+    @Test
+    void failedFormIsNotHalfApplied(JenkinsRule r) throws Throwable {
+        File file = CredentialsAwsGlobalConfiguration.get().getConfigFile().getFile();
+        JenkinsRule.WebClient wc = r.createWebClient().withThrowExceptionOnFailingStatusCode(false);
+        HtmlForm config = wc.goTo("aws").getFormByName("config");
+        config.getSelectByName("_.region").setSelectedAttribute(Region.SA_EAST_1.id(), true);
+
+        r.submit(config);
+
+        assertNull(CredentialsAwsGlobalConfiguration.get().getRegion(), "the region is restored");
+        assertFalse(file.exists(), "nothing is saved");
+        assertNull(
+                ExtensionList.lookupSingleton(FailingConfiguration.class).value,
+                "the field set before the failure, null before, is reset");
+
+        CredentialsAwsGlobalConfiguration.get().setRegion(Region.EU_WEST_1.id());
+        String saved = Files.readString(file.toPath());
+        r.restart();
+        // the configuration file is not read yet
+        CredentialsAwsGlobalConfiguration descriptor = CredentialsAwsGlobalConfiguration.get();
+        JSONObject form = new JSONObject()
+                .element(
+                        descriptor.getJsonSafeClassName(),
+                        new JSONObject().element("region", Region.SA_EAST_1.id()).element("credentialsId", "aws"));
+        AwsManagementLink link = ExtensionList.lookupSingleton(AwsManagementLink.class);
+
+        r.executeOnServer(() -> assertThrows(
+                Descriptor.FormException.class, () -> link.configure(Stapler.getCurrentRequest2(), form)));
+
+        assertEquals(Region.EU_WEST_1.id(), descriptor.getRegion(), "the loaded configuration is restored");
+        assertNull(descriptor.getCredentialsId(), "the credentials id, null before, is reset");
+        assertEquals(saved, Files.readString(file.toPath()), "nothing is saved");
+        assertNull(ExtensionList.lookupSingleton(FailingConfiguration.class).value);
+    }
+
+    @Test
+    void unchangedConfigurationIsNotWritten(JenkinsRule r) throws Exception {
+        CredentialsAwsGlobalConfiguration descriptor = CredentialsAwsGlobalConfiguration.get();
+        File file = new File(r.jenkins.getRootDir(), CredentialsAwsGlobalConfiguration.class.getName() + ".xml");
+        descriptor.setRegion(Region.US_EAST_1.id());
+        assertTrue(file.isFile());
+
+        Files.delete(file.toPath());
+        descriptor.setRegion(Region.US_EAST_1.id());
+        descriptor.save();
+        assertFalse(file.exists(), "nothing written when nothing changed");
+
+        descriptor.setRegion(Region.EU_WEST_1.id());
+        assertTrue(file.isFile(), "written when the region changed");
+    }
+
+    @Test
+    void loadedOnFirstUse(JenkinsRule r) {
+        CredentialsAwsGlobalConfiguration created = new CredentialsAwsGlobalConfiguration();
+        CredentialsAwsGlobalConfiguration.get().setRegion(Region.EU_WEST_1.id());
+        assertEquals(Region.EU_WEST_1.id(), created.getRegion(), "read when first used, not when created");
+    }
+
     @Test
     void credentials(JenkinsRule r) {
         AmazonWebServicesCredentials credentials = new AWSCredentialsImpl(
@@ -85,4 +196,407 @@ class CredentialsAwsGlobalConfigurationTest {
         descriptor.setCredentialsId("");
         assertNull(descriptor.getCredentials());
     }
+
+    @Test
+    void statistics(JenkinsRule r) throws Exception {
+        try (FakeStsServer sts = new FakeStsServer()) {
+            StsClients.setEndpoint(sts.getEndpoint());
+            SystemCredentialsProvider provider = SystemCredentialsProvider.getInstance();
+            provider.getCredentials()
+                    .add(new AWSCredentialsImpl(CredentialsScope.GLOBAL, "aws", "AKIAVALID", "secret", "valid"));
+            provider.getCredentials()
+                    .add(new AWSCredentialsImpl(CredentialsScope.GLOBAL, "rejected", "AKIAREJECTED", "secret", "no"));
+            sts.reject("AKIAREJECTED");
+            CredentialsAwsGlobalConfiguration descriptor = CredentialsAwsGlobalConfiguration.get();
+            CredentialsResolutionMetrics metrics = descriptor.getMetrics();
+            Map<String, Metric> timers = ExtensionList.lookupSingleton(CredentialsResolutionMetricProvider.class)
+                    .getMetricSet()
+                    .getMetrics();
+            assertEquals(0, metrics.getCacheHits());
+            assertEquals(0, metrics.getPaths().get(CredentialsResolutionMetrics.Path.KEY_AND_SECRET).getCalls());
+
+            descriptor.sessionCredentials(Region.US_EAST_1.id(), "aws");
+            descriptor.sessionCredentials(Region.US_EAST_1.id(), "aws");
+            assertThrows(StsException.class, () -> descriptor.sessionCredentials(Region.US_EAST_1.id(), "rejected"));
+
+            CredentialsResolutionMetrics.PathMetrics keyAndSecret =
+                    metrics.getPaths().get(CredentialsResolutionMetrics.Path.KEY_AND_SECRET);
+            assertEquals(2, keyAndSecret.getCalls());
+            assertEquals(1, keyAndSecret.getFailureCount());
+            assertEquals(Map.of("StsException", 1L), keyAndSecret.getFailures());
+            assertEquals(2, keyAndSecret.getLatency().getCount());
+            assertEquals(1, metrics.getCacheHits());
+            assertEquals(0, metrics.getPaths().get(CredentialsResolutionMetrics.Path.SESSION).getCalls());
+            assertEquals(1, ((Timer) timers.get("aws.credentials.resolution.hit")).getCount(), "cache hits are timed");
+            assertEquals(2, ((Timer) timers.get("aws.credentials.resolution.miss")).getCount());
+            assertEquals(2, ((Timer) timers.get("aws.credentials.key_and_secret.duration")).getCount());
+
+            HtmlPage page = r.createWebClient().goTo("aws/stats");
+            HtmlTableRow row = page.getFirstByXPath("//tr[td='Key and secret through STS']");
+            assertNotNull(row);
+            assertEquals("2", row.getCell(1).asNormalizedText(), "calls");
+            assertTrue(row.getCell(2).asNormalizedText().startsWith("1"), "failures");
+            assertTrue(row.getCell(2).asNormalizedText().contains("StsException: 1"), "failures by type");
+            HtmlTableRow cache = page.getFirstByXPath(
+                    "//h2[text()='Session credentials cache']/following-sibling::table[1]/tbody/tr");
+            assertEquals("1", cache.getCell(1).asNormalizedText(), "cache hits");
+        } finally {
+            StsClients.setEndpoint(null);
+        }
+    }
+
+    @Test
+    void credentialsIndexFollowsChanges(JenkinsRule r) throws Exception {
+        SystemCredentialsProvider provider = SystemCredentialsProvider.getInstance();
+        CredentialsAwsGlobalConfiguration descriptor = CredentialsAwsGlobalConfiguration.get();
+        assertNull(descriptor.getCredentials("indexed"));
+
+        AmazonWebServicesCredentials added =
+                new AWSCredentialsImpl(CredentialsScope.GLOBAL, "indexed", "xxx", "secret", "added");
+        provider.getCredentials().add(added);
+        provider.save();
+        assertEquals(added, descriptor.getCredentials("indexed"), "added credentials are found");
+
+        AmazonWebServicesCredentials updated =
+                new AWSCredentialsImpl(CredentialsScope.GLOBAL, "indexed", "yyy", "secret", "updated");
+        provider.getCredentials().set(provider.getCredentials().indexOf(added), updated);
+        provider.save();
+        assertEquals(
+                "updated",
+                descriptor.getCredentials("indexed").getDescription(),
+                "updated credentials replace the previous ones");
+
+        provider.getCredentials().remove(updated);
+        provider.save();
+        assertNull(descriptor.getCredentials("indexed"), "removed credentials are not found");
+
+        AmazonWebServicesCredentials unsaved =
+                new AWSCredentialsImpl(CredentialsScope.GLOBAL, "unsaved", "zzz", "secret", "not saved");
+        provider.getCredentials().add(unsaved);
+        assertNull(descriptor.getCredentials("unsaved"), "the index is not rebuilt on every miss");
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(30);
+        while (descriptor.getCredentials("unsaved") == null && System.nanoTime() < deadline) {
+            Thread.sleep(100);
+        }
+        assertEquals(unsaved, descriptor.getCredentials("unsaved"), "found once the index is rebuilt on a miss");
+    }
+
+    @Test
+    void credentialsListIsPaginated(JenkinsRule r) throws Exception {
+        SystemCredentialsProvider provider = SystemCredentialsProvider.getInstance();
+        for (int i = 0; i < 250; i++) {
+            String id = String.format("aws-%03d", i);
+            provider.getCredentials()
+                    .add(new AWSCredentialsImpl(CredentialsScope.GLOBAL, id, "xxx", "secret", "credentials " + i));
+        }
+        provider.save();
+        CredentialsAwsGlobalConfiguration descriptor = CredentialsAwsGlobalConfiguration.get();
+
+        ListBoxModel items = descriptor.doFillCredentialsIdItems("aws-249");
+        assertEquals(102, items.size(), "the instance profile, the first page and the selected credentials");
+        assertEquals("", items.get(0).value);
+        assertEquals("aws-249", items.get(101).value);
+        assertEquals(101, descriptor.doFillCredentialsIdItems("aws-000").size(), "selected credentials listed once");
+
+        JenkinsRule.WebClient wc = r.createWebClient();
+        WebRequest request = new WebRequest(
+                new URL(
+                        r.getURL(),
+                        "descriptorByName/" + CredentialsAwsGlobalConfiguration.class.getName()
+                                + "/searchCredentials?q=Credentials%2012&offset=5"),
+                HttpMethod.POST);
+        wc.addCrumb(request);
+        String response = wc.getPage(request).getWebResponse().getContentAsString();
+        JSONObject page = JSONObject.fromObject(response).getJSONObject("data");
+        assertEquals(11, page.getInt("total"), "credentials 12 and 120 to 129, ignoring case");
+        assertEquals(6, page.getJSONArray("items").size(), "after the offset");
+
+        wc.goTo("aws");
+    }
+
+    @Test
+    void credentialsValidation(JenkinsRule r) throws Exception {
+        try (FakeStsServer sts = new FakeStsServer()) {
+            StsClients.setEndpoint(sts.getEndpoint());
+            SystemCredentialsProvider provider = SystemCredentialsProvider.getInstance();
+            provider.getCredentials()
+                    .add(new AWSCredentialsImpl(CredentialsScope.GLOBAL, "aws", "AKIAVALID", "secret", "valid"));
+            provider.getCredentials()
+                    .add(new AWSCredentialsImpl(CredentialsScope.GLOBAL, "rejected", "AKIAREJECTED", "secret", "no"));
+            provider.save();
+            sts.reject("AKIAREJECTED");
+            CredentialsAwsGlobalConfiguration descriptor = CredentialsAwsGlobalConfiguration.get();
+            String region = Region.US_EAST_1.id();
+
+            FormValidation valid = descriptor.doCheckCredentialsId("aws", region);
+            assertEquals(FormValidation.Kind.OK, valid.kind);
+            assertTrue(valid.getMessage().contains("AKIAVALID"), valid.getMessage());
+            assertEquals(valid, descriptor.doCheckCredentialsId("aws", region));
+            assertEquals(1, sts.getRequests(), "validated once");
+
+            assertEquals(FormValidation.Kind.ERROR, descriptor.doCheckCredentialsId("rejected", region).kind);
+            assertEquals(FormValidation.Kind.ERROR, descriptor.doCheckCredentialsId("rejected", region).kind);
+            assertEquals(2, sts.getRequests(), "failures are reused too");
+
+            descriptor.doCheckCredentialsId("aws", Region.EU_WEST_1.id());
+            assertEquals(3, sts.getRequests(), "validated per region");
+
+            provider.save();
+            descriptor.doCheckCredentialsId("aws", region);
+            assertEquals(4, sts.getRequests(), "validated again when the credentials change");
+
+            assertEquals(FormValidation.Kind.ERROR, descriptor.doCheckCredentialsId("missing", region).kind);
+            assertEquals(FormValidation.Kind.OK, descriptor.doCheckCredentialsId("", region).kind);
+            assertEquals(FormValidation.Kind.ERROR, descriptor.doCheckCredentialsId("aws", "no-valid").kind);
+            assertEquals(4, sts.getRequests(), "unknown regions are not sent to AWS");
+        } finally {
+            StsClients.setEndpoint(null);
+        }
+    }
+
+    @Test
+    void flightRecorderEvents(JenkinsRule r, @TempDir Path tmp) throws Exception {
+        try (FakeStsServer sts = new FakeStsServer()) {
+            StsClients.setEndpoint(sts.getEndpoint());
+            SystemCredentialsProvider.getInstance()
+                    .getCredentials()
+                    .add(new AWSCredentialsImpl(CredentialsScope.GLOBAL, "aws", "xxx", "secret", "recorded"));
+            CredentialsAwsGlobalConfiguration descriptor = CredentialsAwsGlobalConfiguration.get();
+            String region = Region.US_EAST_1.id();
+
+            try (Recording recording = new Recording(Configuration.getConfiguration("default"))) {
+                recording.start();
+                descriptor.sessionCredentials(region, "aws");
+                recording.stop();
+                assertTrue(resolutionEvents(recording, tmp.resolve("default.jfr")).isEmpty(), "disabled by default");
+            }
+
+            try (Recording recording = new Recording()) {
+                recording.enable(CredentialsResolutionEvent.NAME);
+                recording.start();
+                descriptor.sessionCredentials(Region.EU_WEST_1.id(), "aws");
+                descriptor.sessionCredentials(Region.EU_WEST_1.id(), "aws");
+                recording.stop();
+                List<RecordedEvent> events = resolutionEvents(recording, tmp.resolve("enabled.jfr"));
+                assertEquals(2, events.size());
+                RecordedEvent miss = events.get(0);
+                assertEquals("KEY_AND_SECRET", miss.getString("path"));
+                assertEquals(Region.EU_WEST_1.id(), miss.getString("region"));
+                assertEquals("aws", miss.getString("credentialsId"));
+                assertEquals("MISS", miss.getString("cacheOutcome"));
+                assertEquals(0, miss.getInt("stsRetries"));
+                assertNull(miss.getString("failure"));
+                assertEquals("HIT", events.get(1).getString("cacheOutcome"));
+            }
+        } finally {
+            StsClients.setEndpoint(null);
+        }
+    }
+
+    private static List<RecordedEvent> resolutionEvents(Recording recording, Path file) throws IOException {
+        recording.dump(file);
+        return RecordingFile.readAllEvents(file).stream()
+                .filter(it -> it.getEventType().getName().equals(CredentialsResolutionEvent.NAME))
+                .collect(Collectors.toList());
+    }
+
+    @Test
+    void sessionCredentialsProvider(JenkinsRule r) throws Exception {
+        try (FakeStsServer sts = new FakeStsServer()) {
+            StsClients.setEndpoint(sts.getEndpoint());
+            SystemCredentialsProvider.getInstance()
+                    .getCredentials()
+                    .add(new AWSCredentialsImpl(CredentialsScope.GLOBAL, "aws", "xxx", "secret", "provider"));
+            SessionCredentialsProvider provider =
+                    CredentialsAwsGlobalConfiguration.get().sessionCredentialsProvider(Region.US_EAST_1.id(), "aws");
+
+            String accessKeyId = provider.resolveCredentials().accessKeyId();
+            assertEquals(accessKeyId, provider.resolveCredentials().accessKeyId(), "served from the cache");
+            AWSCredentials v1 = provider.toV1().getCredentials();
+            assertTrue(v1 instanceof AWSSessionCredentials);
+            assertEquals(accessKeyId, v1.getAWSAccessKeyId());
+            assertEquals(1, sts.getRequests());
+        } finally {
+            StsClients.setEndpoint(null);
+        }
+    }
+
+    @Test
+    void sessionCredentialsAsyncTimesOut(JenkinsRule r) throws Exception {
+        try (FakeStsServer sts = new FakeStsServer()) {
+            StsClients.setEndpoint(sts.getEndpoint());
+            sts.setLatencyMillis(2000);
+            SystemCredentialsProvider.getInstance()
+                    .getCredentials()
+                    .add(new AWSCredentialsImpl(CredentialsScope.GLOBAL, "aws", "xxx", "secret", "async"));
+            CompletableFuture<AwsSessionCredentials> result = CredentialsAwsGlobalConfiguration.get()
+                    .sessionCredentialsAsync(Region.US_EAST_1.id(), "aws", Duration.ofMillis(100));
+
+            ExecutionException e = assertThrows(ExecutionException.class, () -> result.get(10, TimeUnit.SECONDS));
+            assertInstanceOf(TimeoutException.class, e.getCause());
+        } finally {
+            StsClients.setEndpoint(null);
+        }
+    }
+
+    @Test
+    void sessionCredentialsAsyncCancelled(JenkinsRule r) throws Exception {
+        try (FakeStsServer sts = new FakeStsServer()) {
+            StsClients.setEndpoint(sts.getEndpoint());
+            sts.setLatencyMillis(1000);
+            SystemCredentialsProvider.getInstance()
+                    .getCredentials()
+                    .add(new AWSCredentialsImpl(CredentialsScope.GLOBAL, "aws", "xxx", "secret", "async"));
+            CredentialsAwsGlobalConfiguration descriptor = CredentialsAwsGlobalConfiguration.get();
+            List<CompletableFuture<AwsSessionCredentials>> running = new ArrayList<>();
+            for (int i = 0; i < 8; i++) {
+                running.add(descriptor.sessionCredentialsAsync(Region.US_EAST_1.id(), "aws"));
+            }
+            CompletableFuture<AwsSessionCredentials> queued =
+                    descriptor.sessionCredentialsAsync(Region.EU_WEST_1.id(), "aws");
+
+            assertTrue(queued.cancel(false));
+            for (CompletableFuture<AwsSessionCredentials> it : running) {
+                assertNotNull(it.get(10, TimeUnit.SECONDS));
+            }
+            Thread.sleep(500);
+            assertTrue(queued.isCancelled());
+            assertEquals(1, sts.getRequests("GetSessionToken"), "the cancelled request was not sent");
+        } finally {
+            StsClients.setEndpoint(null);
+        }
+    }
+
+    @Test
+    void sessionCredentialsAsyncRejected(JenkinsRule r) {
+        CredentialsAwsGlobalConfiguration.shutdown();
+
+        CompletableFuture<AwsSessionCredentials> result =
+                CredentialsAwsGlobalConfiguration.get().sessionCredentialsAsync(Region.US_EAST_1.id(), "aws");
+
+        assertTrue(result.isCompletedExceptionally());
+        ExecutionException e = assertThrows(ExecutionException.class, result::get);
+        assertInstanceOf(RejectedExecutionException.class, e.getCause());
+    }
+
+    @Test
+    void minValidityIsServedFromTheCache(JenkinsRule r) throws Exception {
+        try (FakeStsServer sts = new FakeStsServer()) {
+            StsClients.setEndpoint(sts.getEndpoint());
+            SystemCredentialsProvider.getInstance()
+                    .getCredentials()
+                    .add(new AWSCredentialsImpl(CredentialsScope.GLOBAL, "aws", "xxx", "secret", "validity"));
+            CredentialsAwsGlobalConfiguration descriptor = CredentialsAwsGlobalConfiguration.get();
+            String region = Region.US_EAST_1.id();
+            assertThrows(
+                    IllegalArgumentException.class,
+                    () -> descriptor.sessionCredentials(region, "aws", Duration.ofHours(36), null),
+                    "the longest session could not be cached");
+
+            Duration longest = Duration.ofHours(36).minusMinutes(10);
+            String accessKeyId = descriptor.sessionCredentials(region, "aws", longest, null).accessKeyId();
+            assertEquals(accessKeyId, descriptor.sessionCredentials(region, "aws", longest, null).accessKeyId());
+            assertEquals(accessKeyId, descriptor.sessionCredentials(region, "aws").accessKeyId(), "long enough");
+            assertEquals(1, sts.getRequests());
+
+            for (SessionCredentialsCache.Key key :
+                    descriptor.sessionCredentialsToRefresh(Duration.ofDays(2), Duration.ofDays(1))) {
+                descriptor.refreshSessionCredentials(key);
+            }
+            assertEquals(2, sts.getRequests());
+            assertEquals(
+                    "ASIAFAKE2",
+                    descriptor.sessionCredentials(region, "aws", longest, null).accessKeyId(),
+                    "refreshed for as long as requested");
+            assertEquals("ASIAFAKE2", descriptor.sessionCredentials(region, "aws").accessKeyId());
+            assertEquals(2, sts.getRequests());
+        } finally {
+            StsClients.setEndpoint(null);
+        }
+    }
+
+    @Test
+    void storedSessionCredentialsSurviveAnInvalidationBeforeTheirRestore(JenkinsRule r) throws Throwable {
+        SessionCredentialsStore.ENABLED = true;
+        try (FakeStsServer sts = new FakeStsServer()) {
+            StsClients.setEndpoint(sts.getEndpoint());
+            SystemCredentialsProvider.getInstance()
+                    .getCredentials()
+                    .add(new AWSCredentialsImpl(CredentialsScope.GLOBAL, "aws", "xxx", "secret", "stored"));
+            SystemCredentialsProvider.getInstance().save();
+            String region = Region.US_EAST_1.id();
+            String accessKeyId =
+                    CredentialsAwsGlobalConfiguration.get().sessionCredentials(region, "aws").accessKeyId();
+
+            r.restart();
+            CredentialsAwsGlobalConfiguration descriptor = CredentialsAwsGlobalConfiguration.get();
+            File file = new SessionCredentialsStore(new SessionCredentialsCache(), id -> null).getFile();
+            assertTrue(file.isFile(), "stored when Jenkins stopped");
+            descriptor.onCredentialsChanged();
+            assertTrue(file.isFile(), "not overwritten before the restore");
+            assertEquals(accessKeyId, descriptor.sessionCredentials(region, "aws").accessKeyId());
+            assertEquals(1, sts.getRequests(), "restored");
+        } finally {
+            StsClients.setEndpoint(null);
+            SessionCredentialsStore.ENABLED = false;
+        }
+    }
+
+    @Test
+    void remoteSessionCredentialsProvider(JenkinsRule r) throws Exception {
+        try (FakeStsServer sts = new FakeStsServer()) {
+            StsClients.setEndpoint(sts.getEndpoint());
+            SystemCredentialsProvider.getInstance()
+                    .getCredentials()
+                    .add(new AWSCredentialsImpl(CredentialsScope.GLOBAL, "aws", "xxx", "secret", "remote"));
+            CredentialsAwsGlobalConfiguration descriptor = CredentialsAwsGlobalConfiguration.get();
+            RemoteSessionCredentialsProvider provider =
+                    descriptor.remoteSessionCredentialsProvider(Region.US_EAST_1.id(), "aws");
+            VirtualChannel channel = r.createOnlineSlave().getChannel();
+
+            String accessKeyId = channel.call(new ResolveCredentials(provider));
+            assertEquals("ASIAFAKE1", accessKeyId, "served by the controller");
+            assertEquals(1, sts.getRequests());
+
+            assertEquals(accessKeyId, channel.call(new ResolveCredentials(provider)), "kept on the agent");
+            assertEquals(1, sts.getRequests(), "the agent did not ask again");
+
+            descriptor.onCredentialsChanged();
+            assertEquals("ASIAFAKE2", channel.call(new ResolveCredentials(provider)), "dropped once they changed");
+            assertEquals(2, sts.getRequests());
+
+            RemoteSessionCredentialsProvider instanceProfile =
+                    descriptor.remoteSessionCredentialsProvider(Region.US_EAST_1.id(), null);
+            assertThrows(
+                    SdkClientException.class,
+                    () -> channel.call(new ResolveCredentials(instanceProfile)),
+                    "the credentials of the controller are not given to agents");
+        } finally {
+            StsClients.setEndpoint(null);
+        }
+    }
+
+    private static final class ResolveCredentials extends MasterToSlaveCallable<String, RuntimeException> {
+        private final RemoteSessionCredentialsProvider provider;
+
+        ResolveCredentials(RemoteSessionCredentialsProvider provider) {
+            this.provider = provider;
+        }
+
+        @Override
+        public String call() {
+            return provider.resolveCredentials().accessKeyId();
+        }
+    }
+
+    @TestExtension("failedFormIsNotHalfApplied")
+    public static class FailingConfiguration extends AbstractAwsGlobalConfiguration {
+        private String value;
+
+        @Override
+        public boolean configure(StaplerRequest2 req, JSONObject json) throws FormException {
+            value = "bound";
+            throw new FormException("invalid value", "value");
+        }
+    }
 }
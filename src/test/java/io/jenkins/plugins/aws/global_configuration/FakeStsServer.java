@@ -0,0 +1,249 @@
+package io.jenkins.plugins.aws.global_configuration;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.URLDecoder;
+import java.nio.charset.StandardCharsets;
+import java.time.Instant;
+import java.time.temporal.ChronoUnit;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Local stand-in for the AWS token service, answering the STS query protocol over plain HTTP. It also answers the
+ * instance metadata service (IMDSv2) requests of the instance profile credentials provider under {@code /latest/}.
+ * Latency, throttling and server errors can be injected to test the callers under load.
+ */
+final class FakeStsServer implements AutoCloseable {
+
+    /**
+     * Name under which {@link #getRequests(String)} counts the requests of the credentials of the instance profile.
+     */
+    static final String INSTANCE_CREDENTIALS = "InstanceProfileCredentials";
+
+    private static final String CREDENTIALS_PATH = "/latest/meta-data/iam/security-credentials/";
+
+    private static final String ROLE = "jenkins";
+
+    private final HttpServer server;
+
+    private final ExecutorService executor = Executors.newCachedThreadPool();
+
+    private final AtomicInteger requests = new AtomicInteger();
+
+    private final ConcurrentMap<String, AtomicInteger> requestsByAction = new ConcurrentHashMap<>();
+
+    private final AtomicInteger throttled = new AtomicInteger();
+
+    private final AtomicInteger failed = new AtomicInteger();
+
+    private volatile long latencyMillis;
+
+    private final Set<String> rejectedAccessKeys = ConcurrentHashMap.newKeySet();
+
+    FakeStsServer() throws IOException {
+        server = HttpServer.create(new InetSocketAddress(InetAddress.getLoopbackAddress(), 0), 0);
+        server.createContext("/", this::handle);
+        server.setExecutor(executor);
+        server.start();
+    }
+
+    /**
+     * @return the endpoint to configure in the STS clients.
+     */
+    String getEndpoint() {
+        return "http://" + server.getAddress().getHostString() + ":" + server.getAddress().getPort();
+    }
+
+    /**
+     * @return the number of requests received.
+     */
+    int getRequests() {
+        return requests.get();
+    }
+
+    /**
+     * @return the number of requests received for an STS action, e.g. {@code GetSessionToken}, or
+     *         {@value #INSTANCE_CREDENTIALS} for the credentials of the instance profile.
+     */
+    int getRequests(String action) {
+        AtomicInteger count = requestsByAction.get(action);
+        return count != null ? count.get() : 0;
+    }
+
+    void setLatencyMillis(long latencyMillis) {
+        this.latencyMillis = latencyMillis;
+    }
+
+    /**
+     * Answers the next STS requests with a throttling error.
+     */
+    void throttle(int requests) {
+        throttled.set(requests);
+    }
+
+    /**
+     * Answers the next STS requests with an internal server error.
+     */
+    void fail(int requests) {
+        failed.set(requests);
+    }
+
+    /**
+     * Answers the requests signed with the given access key as if the key did not exist.
+     */
+    void reject(String accessKeyId) {
+        rejectedAccessKeys.add(accessKeyId);
+    }
+
+    private void handle(HttpExchange exchange) throws IOException {
+        int request = requests.incrementAndGet();
+        Map<String, String> parameters =
+                parse(new String(exchange.getRequestBody().readAllBytes(), StandardCharsets.UTF_8));
+        try {
+            if (latencyMillis > 0) {
+                Thread.sleep(latencyMillis);
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        if (exchange.getRequestURI().getPath().startsWith("/latest/")) {
+            handleInstanceMetadata(exchange, request);
+            return;
+        }
+        String action = parameters.getOrDefault("Action", "");
+        count(action);
+        String accessKeyId = accessKeyId(exchange);
+        if (consume(throttled)) {
+            respond(exchange, 400, "<ErrorResponse><Error><Type>Sender</Type><Code>Throttling</Code>"
+                    + "<Message>Rate exceeded</Message></Error>"
+                    + "<RequestId>" + request + "</RequestId></ErrorResponse>");
+        } else if (consume(failed)) {
+            respond(exchange, 500, "<ErrorResponse><Error><Type>Receiver</Type><Code>InternalFailure</Code>"
+                    + "<Message>Injected failure</Message></Error>"
+                    + "<RequestId>" + request + "</RequestId></ErrorResponse>");
+        } else if (rejectedAccessKeys.contains(accessKeyId)) {
+            respond(exchange, 403, "<ErrorResponse><Error><Type>Sender</Type><Code>InvalidClientTokenId</Code>"
+                    + "<Message>The security token included in the request is invalid.</Message></Error>"
+                    + "<RequestId>" + request + "</RequestId></ErrorResponse>");
+        } else if (action.equals("GetCallerIdentity")) {
+            respond(exchange, 200, "<GetCallerIdentityResponse xmlns=\"https://sts.amazonaws.com/doc/2011-06-15/\">"
+                    + "<GetCallerIdentityResult>"
+                    + "<Arn>arn:aws:iam::123456789012:user/" + accessKeyId + "</Arn>"
+                    + "<UserId>" + accessKeyId + "</UserId>"
+                    + "<Account>123456789012</Account>"
+                    + "</GetCallerIdentityResult>"
+                    + "<ResponseMetadata><RequestId>" + request + "</RequestId></ResponseMetadata>"
+                    + "</GetCallerIdentityResponse>");
+        } else if (action.equals("GetSessionToken")) {
+            long duration = Long.parseLong(parameters.getOrDefault("DurationSeconds", "3600"));
+            Instant expiration = Instant.now().plusSeconds(duration).truncatedTo(ChronoUnit.SECONDS);
+            respond(exchange, 200, "<GetSessionTokenResponse xmlns=\"https://sts.amazonaws.com/doc/2011-06-15/\">"
+                    + "<GetSessionTokenResult><Credentials>"
+                    + "<AccessKeyId>ASIAFAKE" + request + "</AccessKeyId>"
+                    + "<SecretAccessKey>secret" + request + "</SecretAccessKey>"
+                    + "<SessionToken>token" + request + "</SessionToken>"
+                    + "<Expiration>" + expiration + "</Expiration>"
+                    + "</Credentials></GetSessionTokenResult>"
+                    + "<ResponseMetadata><RequestId>" + request + "</RequestId></ResponseMetadata>"
+                    + "</GetSessionTokenResponse>");
+        } else {
+            respond(exchange, 400, "<ErrorResponse><Error><Type>Sender</Type><Code>InvalidAction</Code>"
+                    + "<Message>Unsupported action " + action + "</Message></Error>"
+                    + "<RequestId>" + request + "</RequestId></ErrorResponse>");
+        }
+    }
+
+    /**
+     * Session token, role and credentials of the instance profile, the way the SDK requests them.
+     */
+    private void handleInstanceMetadata(HttpExchange exchange, int request) throws IOException {
+        String path = exchange.getRequestURI().getPath();
+        if (path.equals("/latest/api/token") && exchange.getRequestMethod().equals("PUT")) {
+            String ttl = exchange.getRequestHeaders().getFirst("x-aws-ec2-metadata-token-ttl-seconds");
+            exchange.getResponseHeaders().set("x-aws-ec2-metadata-token-ttl-seconds", ttl != null ? ttl : "21600");
+            respond(exchange, 200, "text/plain", "imds-token");
+        } else if (!"imds-token".equals(exchange.getRequestHeaders().getFirst("x-aws-ec2-metadata-token"))) {
+            respond(exchange, 401, "text/plain", "");
+        } else if (path.equals(CREDENTIALS_PATH)) {
+            respond(exchange, 200, "text/plain", ROLE);
+        } else if (path.equals(CREDENTIALS_PATH + ROLE)) {
+            count(INSTANCE_CREDENTIALS);
+            Instant now = Instant.now().truncatedTo(ChronoUnit.SECONDS);
+            respond(exchange, 200, "application/json", "{\"Code\":\"Success\",\"Type\":\"AWS-HMAC\","
+                    + "\"LastUpdated\":\"" + now + "\","
+                    + "\"AccessKeyId\":\"ASIAINSTANCE" + request + "\","
+                    + "\"SecretAccessKey\":\"secret" + request + "\","
+                    + "\"Token\":\"token" + request + "\","
+                    + "\"Expiration\":\"" + now.plus(6, ChronoUnit.HOURS) + "\"}");
+        } else {
+            respond(exchange, 404, "text/plain", "");
+        }
+    }
+
+    private void count(String action) {
+        requestsByAction.computeIfAbsent(action, it -> new AtomicInteger()).incrementAndGet();
+    }
+
+    private static boolean consume(AtomicInteger remaining) {
+        return remaining.getAndUpdate(it -> Math.max(it - 1, 0)) > 0;
+    }
+
+    /**
+     * @return the access key of the Signature Version 4 authorization header, e.g.
+     *         {@code Credential=AKIA.../20240101/us-east-1/sts/aws4_request}.
+     */
+    private static String accessKeyId(HttpExchange exchange) {
+        String authorization = exchange.getRequestHeaders().getFirst("Authorization");
+        if (authorization == null) {
+            return "";
+        }
+        int start = authorization.indexOf("Credential=");
+        int end = authorization.indexOf('/', start);
+        return start < 0 || end < 0 ? "" : authorization.substring(start + "Credential=".length(), end);
+    }
+
+    private static void respond(HttpExchange exchange, int status, String body) throws IOException {
+        respond(exchange, status, "text/xml", body);
+    }
+
+    private static void respond(HttpExchange exchange, int status, String contentType, String body)
+            throws IOException {
+        byte[] bytes = body.getBytes(StandardCharsets.UTF_8);
+        exchange.getResponseHeaders().set("Content-Type", contentType);
+        // a length of 0 would mean a chunked response
+        exchange.sendResponseHeaders(status, bytes.length > 0 ? bytes.length : -1);
+        try (OutputStream out = exchange.getResponseBody()) {
+            out.write(bytes);
+        }
+    }
+
+    private static Map<String, String> parse(String form) {
+        Map<String, String> parameters = new HashMap<>();
+        for (String pair : form.split("&")) {
+            int separator = pair.indexOf('=');
+            if (separator > 0) {
+                parameters.put(
+                        URLDecoder.decode(pair.substring(0, separator), StandardCharsets.UTF_8),
+                        URLDecoder.decode(pair.substring(separator + 1), StandardCharsets.UTF_8));
+            }
+        }
+        return parameters;
+    }
+
+    @Override
+    public void close() {
+        server.stop(0);
+        executor.shutdownNow();
+    }
+}
@@ -0,0 +1,82 @@
+package io.jenkins.plugins.aws.global_configuration;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.net.URL;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicInteger;
+import org.junit.jupiter.api.Test;
+import software.amazon.awssdk.auth.credentials.AwsCredentialsProvider;
+import software.amazon.awssdk.auth.credentials.AwsSessionCredentials;
+import software.amazon.awssdk.http.SdkHttpMethod;
+
+class S3UrlSignerTest {
+
+    private final AtomicInteger resolutions = new AtomicInteger();
+
+    private final AwsCredentialsProvider credentials = () -> {
+        resolutions.incrementAndGet();
+        return AwsSessionCredentials.create("ASIAEXAMPLE", "secret", "token");
+    };
+
+    private final S3UrlSigner signer = new S3UrlSigner("eu-west-1", credentials);
+
+    @Test
+    void presign() {
+        URL url = signer.presign(SdkHttpMethod.GET, "bucket", "path/to/my artifact.zip", Duration.ofHours(1));
+        assertEquals("https", url.getProtocol());
+        assertEquals("bucket.s3.eu-west-1.amazonaws.com", url.getHost());
+        assertEquals("/path/to/my%20artifact.zip", url.getPath());
+        String query = url.getQuery();
+        assertTrue(query.contains("X-Amz-Algorithm=AWS4-HMAC-SHA256"), query);
+        assertTrue(query.contains("X-Amz-Credential=ASIAEXAMPLE%2F"), query);
+        assertTrue(query.contains("%2Feu-west-1%2Fs3%2Faws4_request"), query);
+        assertTrue(query.contains("X-Amz-Expires=3600"), query);
+        assertTrue(query.contains("X-Amz-Security-Token=token"), query);
+        assertTrue(query.contains("X-Amz-Signature="), query);
+    }
+
+    @Test
+    void pathStyleForBucketsWithDots() {
+        URL url = signer.presign(SdkHttpMethod.PUT, "my.bucket", "key", Duration.ofMinutes(5));
+        assertEquals("s3.eu-west-1.amazonaws.com", url.getHost());
+        assertEquals("/my.bucket/key", url.getPath());
+    }
+
+    @Test
+    void hostOfTheRegionPartition() {
+        S3UrlSigner china = new S3UrlSigner("cn-north-1", credentials);
+        URL url = china.presign(SdkHttpMethod.GET, "bucket", "key", Duration.ofHours(1));
+        assertEquals("bucket.s3.cn-north-1.amazonaws.com.cn", url.getHost());
+        assertTrue(url.getQuery().contains("%2Fcn-north-1%2Fs3%2Faws4_request"), url.getQuery());
+        url = china.presign(SdkHttpMethod.GET, "my.bucket", "key", Duration.ofHours(1));
+        assertEquals("s3.cn-north-1.amazonaws.com.cn", url.getHost());
+    }
+
+    @Test
+    void batchResolvesCredentialsOnce() {
+        List<String> keys = new ArrayList<>();
+        for (int i = 0; i < 1000; i++) {
+            keys.add("artifacts/" + i + ".txt");
+        }
+        Map<String, URL> urls = signer.presign(SdkHttpMethod.GET, "bucket", keys, Duration.ofHours(1));
+        assertEquals(keys, new ArrayList<>(urls.keySet()), "in the order of the keys");
+        assertEquals("/artifacts/999.txt", urls.get("artifacts/999.txt").getPath());
+        assertEquals(1, resolutions.get());
+    }
+
+    @Test
+    void expirationIsLimited() {
+        assertThrows(
+                IllegalArgumentException.class,
+                () -> signer.presign(SdkHttpMethod.GET, "bucket", "key", Duration.ofDays(8)));
+        assertThrows(
+                IllegalArgumentException.class,
+                () -> signer.presign(SdkHttpMethod.GET, "bucket", "key", Duration.ZERO));
+    }
+}
@@ -0,0 +1,291 @@
+package io.jenkins.plugins.aws.global_configuration;
+
+import static org.junit.jupiter.api.Assertions.assertDoesNotThrow;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.time.Clock;
+import java.time.Duration;
+import java.time.Instant;
+import java.time.ZoneId;
+import java.time.ZoneOffset;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import org.junit.jupiter.api.Test;
+import software.amazon.awssdk.auth.credentials.AwsSessionCredentials;
+
+class SessionCredentialsCacheTest {
+
+    private final MutableClock clock = new MutableClock(Instant.parse("2024-01-01T00:00:00Z"));
+
+    private final SessionCredentialsCache cache = new SessionCredentialsCache(clock);
+
+    @Test
+    void evictedBeforeExpiration() {
+        SessionCredentialsCache.Key key = new SessionCredentialsCache.Key("us-east-1", "aws", 3600);
+        cache.put(key, cached(Duration.ofHours(1)));
+        assertNotNull(cache.get(key));
+
+        clock.advance(Duration.ofMinutes(49));
+        assertNotNull(cache.get(key), "still served well before the expiration");
+
+        clock.advance(Duration.ofMinutes(2));
+        assertNull(cache.get(key), "evicted before the token expires");
+
+        clock.advance(Duration.ofMinutes(9));
+        assertNull(cache.get(key));
+        assertEquals(0, cache.size(), "removed once expired");
+    }
+
+    @Test
+    void shortSessionsKeepAQuarterOfTheirLifetime() {
+        SessionCredentialsCache.Key key = new SessionCredentialsCache.Key("us-east-1", "aws", 900);
+        cache.put(key, cached(Duration.ofMinutes(15)));
+
+        clock.advance(Duration.ofMinutes(11));
+        assertNotNull(cache.get(key));
+
+        clock.advance(Duration.ofMinutes(1));
+        assertNull(cache.get(key));
+    }
+
+    @Test
+    void keyedByRegionCredentialsAndDuration() {
+        cache.put(new SessionCredentialsCache.Key("us-east-1", "aws", 3600), cached(Duration.ofHours(1)));
+
+        assertNull(cache.get(new SessionCredentialsCache.Key("eu-west-1", "aws", 3600)));
+        assertNull(cache.get(new SessionCredentialsCache.Key("us-east-1", "other", 3600)));
+        assertNull(cache.get(new SessionCredentialsCache.Key("us-east-1", "aws", 7200)));
+        assertNotNull(cache.get(new SessionCredentialsCache.Key("us-east-1", "aws", 3600)));
+    }
+
+    @Test
+    void invalidateAll() {
+        SessionCredentialsCache.Key aws = new SessionCredentialsCache.Key(null, "aws", 3600);
+        SessionCredentialsCache.Key other = new SessionCredentialsCache.Key(null, "other", 3600);
+        cache.put(aws, cached(Duration.ofHours(1)));
+        cache.put(other, cached(Duration.ofHours(1)));
+
+        cache.invalidateAll();
+        assertNull(cache.get(aws));
+        assertNull(cache.get(other));
+    }
+
+    @Test
+    void loadInProgressIsNotCachedOnceInvalidated() throws Exception {
+        SessionCredentialsCache.Key key = new SessionCredentialsCache.Key("us-east-1", "aws", 3600);
+        SessionCredentialsCache.Cached old = cached(Duration.ofHours(1));
+        CountDownLatch loading = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        ExecutorService executor = Executors.newSingleThreadExecutor();
+        try {
+            Future<SessionCredentialsCache.Cached> result = executor.submit(() -> cache.get(key, () -> {
+                loading.countDown();
+                try {
+                    release.await();
+                } catch (InterruptedException e) {
+                    throw new InterruptedIOException();
+                }
+                return old;
+            }));
+            assertTrue(loading.await(10, TimeUnit.SECONDS));
+            cache.invalidateAll();
+            SessionCredentialsCache.Cached current = cached(Duration.ofHours(1));
+            assertSame(current, cache.get(key, () -> current), "new callers do not wait for the previous load");
+            release.countDown();
+            assertSame(old, result.get(10, TimeUnit.SECONDS), "returned to the caller that asked for it");
+            assertSame(current, cache.get(key), "not cached over the session credentials loaded since");
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    @Test
+    void onlyRecentlyUsedEntriesAreRefreshed() throws Exception {
+        SessionCredentialsCache.Key used = new SessionCredentialsCache.Key("us-east-1", "used", 3600);
+        SessionCredentialsCache.Key idle = new SessionCredentialsCache.Key("us-east-1", "idle", 3600);
+        cache.put(used, cached(Duration.ofHours(1)));
+        cache.put(idle, cached(Duration.ofHours(1)));
+        Duration window = Duration.ofMinutes(2);
+        Duration idleTimeout = Duration.ofMinutes(30);
+        assertTrue(cache.refreshCandidates(window, idleTimeout).isEmpty(), "not evicted soon");
+
+        clock.advance(Duration.ofMinutes(40));
+        assertNotNull(cache.get(used));
+        clock.advance(Duration.ofMinutes(9));
+        assertEquals(List.of(used), cache.refreshCandidates(window, idleTimeout));
+
+        SessionCredentialsCache.Cached renewed = cached(Duration.ofHours(1));
+        assertSame(renewed, cache.refresh(used, () -> renewed));
+        assertTrue(cache.refreshCandidates(window, idleTimeout).isEmpty(), "renewed ones are not evicted soon");
+    }
+
+    @Test
+    void concurrentLoadsAreCoalesced() throws Exception {
+        SessionCredentialsCache.Key key = new SessionCredentialsCache.Key("us-east-1", "aws", 3600);
+        AtomicInteger loads = new AtomicInteger();
+        CountDownLatch loading = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        SessionCredentialsCache.Loader loader = () -> {
+            loads.incrementAndGet();
+            loading.countDown();
+            try {
+                release.await();
+            } catch (InterruptedException e) {
+                throw new InterruptedIOException();
+            }
+            return cached(Duration.ofHours(1));
+        };
+        ExecutorService executor = Executors.newFixedThreadPool(8);
+        try {
+            List<Future<SessionCredentialsCache.Cached>> results = new ArrayList<>();
+            results.add(executor.submit(() -> cache.get(key, loader)));
+            assertTrue(loading.await(10, TimeUnit.SECONDS));
+            for (int i = 0; i < 7; i++) {
+                results.add(executor.submit(() -> cache.get(key, loader)));
+            }
+            SessionCredentialsCache.Key other = new SessionCredentialsCache.Key("us-east-1", "other", 3600);
+            assertNotNull(
+                    cache.get(other, () -> cached(Duration.ofHours(1))), "other keys are not blocked by the load");
+            release.countDown();
+            SessionCredentialsCache.Cached first = results.get(0).get(10, TimeUnit.SECONDS);
+            for (Future<SessionCredentialsCache.Cached> result : results) {
+                assertSame(first, result.get(10, TimeUnit.SECONDS));
+            }
+            assertEquals(1, loads.get(), "a single load served every caller");
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    @Test
+    void waitersTakeTheSharedLoad() throws Exception {
+        SessionCredentialsCache.Key key = new SessionCredentialsCache.Key("us-east-1", "aws", 3600);
+        AtomicInteger loads = new AtomicInteger();
+        CountDownLatch loading = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        SessionCredentialsCache.Loader loader = () -> {
+            loads.incrementAndGet();
+            loading.countDown();
+            try {
+                release.await();
+            } catch (InterruptedException e) {
+                throw new InterruptedIOException();
+            }
+            return cached(Duration.ofMinutes(40));
+        };
+        ExecutorService executor = Executors.newFixedThreadPool(1);
+        try {
+            Future<SessionCredentialsCache.Cached> first =
+                    executor.submit(() -> cache.get(key, Duration.ofMinutes(30), loader));
+            assertTrue(loading.await(10, TimeUnit.SECONDS));
+            CompletableFuture<SessionCredentialsCache.Cached> waiter = new CompletableFuture<>();
+            Thread thread = new Thread(() -> {
+                try {
+                    waiter.complete(cache.get(key, Duration.ofMinutes(30), loader));
+                } catch (IOException | RuntimeException e) {
+                    waiter.completeExceptionally(e);
+                }
+            });
+            thread.start();
+            long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(10);
+            while (thread.getState() != Thread.State.WAITING && System.nanoTime() < deadline) {
+                Thread.sleep(10);
+            }
+            release.countDown();
+            assertSame(first.get(10, TimeUnit.SECONDS), waiter.get(10, TimeUnit.SECONDS));
+            assertEquals(1, loads.get(), "the waiter did not load again");
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    @Test
+    void failedLoadIsNotCached() {
+        SessionCredentialsCache.Key key = new SessionCredentialsCache.Key("us-east-1", "aws", 3600);
+        assertThrows(IOException.class, () -> cache.get(key, () -> {
+            throw new IOException("throttled");
+        }));
+        assertDoesNotThrow(() -> assertNotNull(cache.get(key, () -> cached(Duration.ofHours(1)))));
+    }
+
+    @Test
+    void previousCredentialsServedWhenLoadFails() throws Exception {
+        SessionCredentialsCache.Key key = new SessionCredentialsCache.Key("us-east-1", "aws", 3600);
+        SessionCredentialsCache.Cached previous = cached(Duration.ofHours(1));
+        cache.put(key, previous);
+        SessionCredentialsCache.Loader failing = () -> {
+            throw new IOException("throttled");
+        };
+
+        clock.advance(Duration.ofMinutes(55));
+        assertSame(previous, cache.get(key, failing), "served while not expired");
+        assertEquals(1, cache.getStaleHits());
+        assertThrows(IOException.class, () -> cache.refresh(key, failing), "refreshes report the failure");
+
+        clock.advance(Duration.ofMinutes(4));
+        assertThrows(IOException.class, () -> cache.get(key, failing), "not served when about to expire");
+    }
+
+    @Test
+    void longerSessionServesEveryCaller() throws Exception {
+        SessionCredentialsCache.Key key = new SessionCredentialsCache.Key("us-east-1", "aws", 3600);
+        SessionCredentialsCache.Cached shortLived = cached(Duration.ofHours(1));
+        SessionCredentialsCache.Cached longLived = cached(Duration.ofHours(6));
+        cache.put(key, shortLived);
+
+        assertSame(shortLived, cache.get(key, Duration.ofMinutes(30), () -> longLived));
+        assertSame(longLived, cache.get(key, Duration.ofHours(4), () -> longLived), "expires too soon");
+        assertSame(longLived, cache.get(key), "replaces the shorter session for every caller");
+
+        clock.advance(Duration.ofHours(3));
+        assertNull(cache.get(key, Duration.ofHours(4)));
+        assertSame(longLived, cache.get(key, Duration.ofHours(2)));
+    }
+
+    private SessionCredentialsCache.Cached cached(Duration validity) {
+        return new SessionCredentialsCache.Cached(
+                AwsSessionCredentials.create("accessKey", "secretKey", "sessionToken"),
+                clock.instant().plus(validity));
+    }
+
+    static final class MutableClock extends Clock {
+        private Instant now;
+
+        MutableClock(Instant now) {
+            this.now = now;
+        }
+
+        void advance(Duration duration) {
+            now = now.plus(duration);
+        }
+
+        @Override
+        public ZoneId getZone() {
+            return ZoneOffset.UTC;
+        }
+
+        @Override
+        public Clock withZone(ZoneId zone) {
+            return this;
+        }
+
+        @Override
+        public Instant instant() {
+            return now;
+        }
+    }
+}
@@ -0,0 +1,63 @@
+package io.jenkins.plugins.aws.global_configuration;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+import com.cloudbees.jenkins.plugins.awscredentials.AWSCredentialsImpl;
+import com.cloudbees.plugins.credentials.CredentialsScope;
+import com.cloudbees.plugins.credentials.SystemCredentialsProvider;
+import hudson.ExtensionList;
+import hudson.model.TaskListener;
+import org.junit.jupiter.api.Test;
+import org.jvnet.hudson.test.JenkinsRule;
+import org.jvnet.hudson.test.junit.jupiter.WithJenkins;
+import software.amazon.awssdk.regions.Region;
+
+@WithJenkins
+class SessionCredentialsRefresherTest {
+
+    @Test
+    void configuredCredentialsArePrewarmedOnce(JenkinsRule r) throws Exception {
+        try (FakeStsServer sts = new FakeStsServer()) {
+            StsClients.setEndpoint(sts.getEndpoint());
+            SystemCredentialsProvider.getInstance()
+                    .getCredentials()
+                    .add(new AWSCredentialsImpl(CredentialsScope.GLOBAL, "aws", "xxx", "secret", "prewarmed"));
+            CredentialsAwsGlobalConfiguration configuration = CredentialsAwsGlobalConfiguration.get();
+            configuration.setRegion(Region.US_EAST_1.id());
+            configuration.setCredentialsId("aws");
+            SessionCredentialsRefresher refresher = ExtensionList.lookupSingleton(SessionCredentialsRefresher.class);
+
+            refresher.execute(TaskListener.NULL);
+            assertEquals(1, sts.getRequests("GetSessionToken"), "requested by the first run");
+
+            refresher.execute(TaskListener.NULL);
+            configuration.onCredentialsChanged();
+            refresher.execute(TaskListener.NULL);
+            assertEquals(1, sts.getRequests("GetSessionToken"), "not requested again while unused");
+        } finally {
+            StsClients.setEndpoint(null);
+        }
+    }
+
+    @Test
+    void failedPrewarmIsNotRetried(JenkinsRule r) throws Exception {
+        try (FakeStsServer sts = new FakeStsServer()) {
+            StsClients.setEndpoint(sts.getEndpoint());
+            sts.reject("xxx");
+            SystemCredentialsProvider.getInstance()
+                    .getCredentials()
+                    .add(new AWSCredentialsImpl(CredentialsScope.GLOBAL, "aws", "xxx", "secret", "rejected"));
+            CredentialsAwsGlobalConfiguration configuration = CredentialsAwsGlobalConfiguration.get();
+            configuration.setRegion(Region.US_EAST_1.id());
+            configuration.setCredentialsId("aws");
+            SessionCredentialsRefresher refresher = ExtensionList.lookupSingleton(SessionCredentialsRefresher.class);
+
+            refresher.execute(TaskListener.NULL);
+            int requests = sts.getRequests("GetSessionToken");
+            refresher.execute(TaskListener.NULL);
+            assertEquals(requests, sts.getRequests("GetSessionToken"), "the token service is not called every run");
+        } finally {
+            StsClients.setEndpoint(null);
+        }
+    }
+}
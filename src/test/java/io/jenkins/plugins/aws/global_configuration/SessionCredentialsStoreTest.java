@@ -0,0 +1,81 @@
+package io.jenkins.plugins.aws.global_configuration;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.function.Function;
+import org.junit.jupiter.api.Test;
+import org.jvnet.hudson.test.JenkinsRule;
+import org.jvnet.hudson.test.junit.jupiter.WithJenkins;
+import software.amazon.awssdk.auth.credentials.AwsSessionCredentials;
+
+@WithJenkins
+class SessionCredentialsStoreTest {
+
+    private final SessionCredentialsCacheTest.MutableClock clock =
+            new SessionCredentialsCacheTest.MutableClock(Instant.now());
+
+    @Test
+    void restoresUnexpiredSessionCredentials(JenkinsRule r) throws Exception {
+        SessionCredentialsCache cache = new SessionCredentialsCache(clock);
+        SessionCredentialsCache.Key kept = new SessionCredentialsCache.Key("us-east-1", "aws", 3600);
+        SessionCredentialsCache.Key removed = new SessionCredentialsCache.Key(null, "removed", 3600);
+        SessionCredentialsCache.Key rotated = new SessionCredentialsCache.Key(null, "rotated", 3600);
+        cache.put(kept, cached(Duration.ofHours(1)));
+        cache.put(removed, cached(Duration.ofHours(1)));
+        cache.put(rotated, cached(Duration.ofHours(1)));
+        SessionCredentialsStore store = new SessionCredentialsStore(cache, id -> "AKIAOLD");
+        store.save();
+
+        String stored = Files.readString(store.getFile().toPath(), StandardCharsets.UTF_8);
+        assertFalse(stored.contains("sessionToken"), "encrypted");
+        assertFalse(stored.contains("ASIA"), "encrypted");
+
+        SessionCredentialsCache restored = new SessionCredentialsCache();
+        Function<String, String> sources = id -> switch (id) {
+            case "removed" -> null;
+            case "rotated" -> "AKIANEW";
+            default -> "AKIAOLD";
+        };
+        new SessionCredentialsStore(restored, sources).restore();
+        assertNotNull(restored.get(kept));
+        assertEquals("ASIASTORED", restored.get(kept).credentials().accessKeyId());
+        assertNull(restored.get(removed), "credentials removed in the meantime are dropped");
+        assertNull(restored.get(rotated), "credentials holding another access key in the meantime are dropped");
+    }
+
+    @Test
+    void credentialsWithoutAccessKeyAreNotStored(JenkinsRule r) throws Exception {
+        SessionCredentialsCache cache = new SessionCredentialsCache(clock);
+        cache.put(new SessionCredentialsCache.Key(null, "aws", 3600), cached(Duration.ofHours(1)));
+        SessionCredentialsStore store = new SessionCredentialsStore(cache, id -> null);
+        store.save();
+        assertFalse(store.getFile().exists());
+    }
+
+    @Test
+    void expiredSessionCredentialsAreNotStored(JenkinsRule r) throws Exception {
+        SessionCredentialsCache cache = new SessionCredentialsCache(clock);
+        cache.put(new SessionCredentialsCache.Key(null, "aws", 900), cached(Duration.ofMinutes(15)));
+        SessionCredentialsStore store = new SessionCredentialsStore(cache, id -> "AKIAOLD");
+        store.save();
+        assertTrue(store.getFile().isFile());
+
+        clock.advance(Duration.ofMinutes(15));
+        store.save();
+        assertFalse(store.getFile().exists(), "nothing left to store");
+    }
+
+    private SessionCredentialsCache.Cached cached(Duration validity) {
+        return new SessionCredentialsCache.Cached(
+                AwsSessionCredentials.create("ASIASTORED", "secretKey", "sessionToken"),
+                clock.instant().plus(validity));
+    }
+}
@@ -0,0 +1,88 @@
+package io.jenkins.plugins.aws.global_configuration;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+import org.junit.jupiter.api.Test;
+import software.amazon.awssdk.awscore.exception.AwsErrorDetails;
+import software.amazon.awssdk.awscore.exception.AwsServiceException;
+import software.amazon.awssdk.core.exception.SdkClientException;
+
+class StsCallGuardTest {
+
+    private final SessionCredentialsCacheTest.MutableClock clock =
+            new SessionCredentialsCacheTest.MutableClock(Instant.parse("2024-01-01T00:00:00Z"));
+
+    private final List<Long> sleeps = new ArrayList<>();
+
+    private final StsCallGuard guard = new StsCallGuard(clock, millis -> {
+        sleeps.add(millis);
+        clock.advance(Duration.ofMillis(millis));
+    });
+
+    @Test
+    void throttlingIsRetriedWithBackoff() throws Exception {
+        AtomicInteger calls = new AtomicInteger();
+        String result = guard.call("us-east-1", () -> {
+            if (calls.incrementAndGet() < 3) {
+                throw throttling();
+            }
+            return "ok";
+        });
+        assertEquals("ok", result);
+        assertEquals(3, calls.get());
+        assertEquals(2, guard.getRetries());
+        StsCallGuard.RegionState region = guard.getRegions().get(0);
+        assertEquals("us-east-1", region.getRegion());
+        assertEquals(2, region.getThrottles());
+        assertEquals(StsCallGuard.CircuitState.CLOSED, region.getState());
+        assertTrue(sleeps.stream().allMatch(it -> it <= 400), "jittered below the exponential ceiling");
+    }
+
+    @Test
+    void clientErrorsAreNotRetried() {
+        AtomicInteger calls = new AtomicInteger();
+        assertThrows(AwsServiceException.class, () -> guard.call("us-east-1", () -> {
+            calls.incrementAndGet();
+            throw AwsServiceException.builder()
+                    .statusCode(403)
+                    .awsErrorDetails(AwsErrorDetails.builder()
+                            .errorCode("InvalidClientTokenId")
+                            .build())
+                    .build();
+        }));
+        assertEquals(1, calls.get());
+        assertEquals(0, guard.getRetries());
+    }
+
+    @Test
+    void circuitOpensPerRegion() throws Exception {
+        for (int i = 0; i < 2; i++) {
+            assertThrows(SdkClientException.class, () -> guard.call("us-east-1", () -> {
+                throw SdkClientException.create("timeout");
+            }));
+        }
+        assertEquals(StsCallGuard.CircuitState.OPEN, guard.getRegions().get(0).getState());
+        assertThrows(StsCallGuard.CircuitOpenException.class, () -> guard.call("us-east-1", () -> "ok"));
+        assertEquals(1, guard.getRejections());
+        assertEquals("ok", guard.call("eu-west-1", () -> "ok"), "other regions are not affected");
+
+        clock.advance(Duration.ofSeconds(30));
+        assertEquals("ok", guard.call("us-east-1", () -> "ok"), "a probe goes through after a while");
+        assertEquals(StsCallGuard.CircuitState.CLOSED, guard.getRegions().get(1).getState());
+        assertEquals(0, guard.getOpenCircuits());
+    }
+
+    private static AwsServiceException throttling() {
+        return AwsServiceException.builder()
+                .statusCode(400)
+                .awsErrorDetails(AwsErrorDetails.builder().errorCode("Throttling").build())
+                .build();
+    }
+}
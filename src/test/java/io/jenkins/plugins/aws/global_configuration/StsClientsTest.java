@@ -0,0 +1,36 @@
+package io.jenkins.plugins.aws.global_configuration;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotSame;
+import static org.junit.jupiter.api.Assertions.assertSame;
+
+import org.junit.jupiter.api.Test;
+import org.jvnet.hudson.test.JenkinsRule;
+import org.jvnet.hudson.test.junit.jupiter.WithJenkins;
+import software.amazon.awssdk.auth.credentials.AwsBasicCredentials;
+import software.amazon.awssdk.auth.credentials.AwsCredentials;
+import software.amazon.awssdk.regions.Region;
+import software.amazon.awssdk.services.sts.StsClient;
+
+@WithJenkins
+class StsClientsTest {
+
+    @Test
+    void clientsAreCachedPerRegionAndCredentials(JenkinsRule r) {
+        StsClients stsClients = new StsClients(CredentialsAwsGlobalConfiguration.get().getClientFactory());
+        AwsCredentials credentials = AwsBasicCredentials.create("AKIA0", "secret");
+        StsClient client = use(stsClients, "us-east-1", credentials);
+        assertEquals(Region.US_EAST_1, client.serviceClientConfiguration().region());
+        assertSame(client, use(stsClients, "us-east-1", credentials));
+        assertNotSame(client, use(stsClients, "eu-west-1", credentials));
+        assertNotSame(client, use(stsClients, "us-east-1", AwsBasicCredentials.create("AKIA1", "secret")));
+        assertEquals(3, stsClients.size());
+        stsClients.close();
+    }
+
+    private static StsClient use(StsClients stsClients, String region, AwsCredentials credentials) {
+        try (ClientCache.Lease<StsClient> lease = stsClients.acquire(region, credentials)) {
+            return lease.get();
+        }
+    }
+}